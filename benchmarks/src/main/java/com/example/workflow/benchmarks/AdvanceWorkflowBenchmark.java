@@ -0,0 +1,102 @@
+package com.example.workflow.benchmarks;
+
+import com.example.workflow.model.WorkflowExecutionEntity;
+import com.example.workflow.model.WorkflowJsonEntity;
+import com.example.workflow.repository.WorkflowExecutionEventRepository;
+import com.example.workflow.repository.WorkflowExecutionRepository;
+import com.example.workflow.service.DocumentStorageService;
+import com.example.workflow.service.ExecutionEventService;
+import com.example.workflow.service.WorkflowDefinitionCache;
+import com.example.workflow.service.WorkflowExecutionEngine;
+import com.example.workflow.service.WorkflowMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One step of {@link WorkflowExecutionEngine#advanceWorkflow} against
+ * in-memory repositories: status bookkeeping, workflow data serialization and
+ * the event log delta, without database round trips. The execution is walked
+ * through the whole workflow and restarted at the upload node once complete.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdvanceWorkflowBenchmark {
+
+    @Param({ "5", "20", "100" })
+    private int nodeCount;
+
+    @Param({ "10", "100" })
+    private int dataEntries;
+
+    private WorkflowExecutionEngine engine;
+    private WorkflowJsonEntity workflow;
+    private WorkflowExecutionEntity execution;
+    private Map<String, Object> workflowData;
+
+    @Setup
+    public void setUp() {
+        WorkflowExecutionRepository executionRepository = BenchmarkFixtures.repository(
+                WorkflowExecutionRepository.class, Map.of("saveAndFlush", args -> args[0], "save", args -> args[0]));
+        WorkflowExecutionEventRepository eventRepository = BenchmarkFixtures.repository(
+                WorkflowExecutionEventRepository.class, Map.of("save", args -> args[0]));
+
+        ExecutionEventService eventService = new ExecutionEventService();
+        BenchmarkFixtures.inject(eventService, "eventRepository", eventRepository);
+        BenchmarkFixtures.inject(eventService, "jsonMappers", BenchmarkFixtures.JSON_MAPPERS);
+
+        // Only delete(null) is reached, which returns before touching the database
+        WorkflowMetrics metrics = BenchmarkFixtures.metrics();
+        DocumentStorageService documentStorageService = new DocumentStorageService(null, null, null, metrics,
+                DataSize.ofMegabytes(50));
+
+        engine = new WorkflowExecutionEngine();
+        BenchmarkFixtures.inject(engine, "executionRepository", executionRepository);
+        BenchmarkFixtures.inject(engine, "definitionCache", new WorkflowDefinitionCache(256, metrics));
+        BenchmarkFixtures.inject(engine, "eventService", eventService);
+        BenchmarkFixtures.inject(engine, "documentStorageService", documentStorageService);
+        BenchmarkFixtures.inject(engine, "metrics", metrics);
+        BenchmarkFixtures.inject(engine, "jsonMappers", BenchmarkFixtures.JSON_MAPPERS);
+        // No transaction here, so nothing would be delivered after commit
+        BenchmarkFixtures.inject(engine, "eventPublisher", (ApplicationEventPublisher) event -> {
+        });
+
+        workflow = BenchmarkFixtures.workflow(1L, nodeCount);
+        execution = BenchmarkFixtures.execution(1L, workflow, nodeCount, 0, "alice");
+        workflowData = BenchmarkFixtures.workflowData(dataEntries);
+    }
+
+    @Benchmark
+    public WorkflowExecutionEntity advance() {
+        if (execution.getCurrentNodeIndex() >= nodeCount) {
+            execution = BenchmarkFixtures.execution(1L, workflow, nodeCount, 0, "alice");
+        }
+
+        Map<String, Object> data = new HashMap<>(workflowData);
+        data.put("lastNode", execution.getCurrentNodeIndex());
+
+        Map<String, Object> context = new HashMap<>();
+        context.put("advanceWorkflow", true);
+        context.put("nodeStatus", "Completed");
+        context.put("workflowData", data);
+        return engine.advanceWorkflow(execution, context);
+    }
+}
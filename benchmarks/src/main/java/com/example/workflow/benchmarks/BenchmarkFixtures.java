@@ -0,0 +1,186 @@
+package com.example.workflow.benchmarks;
+
+import com.example.workflow.config.JsonMappers;
+import com.example.workflow.model.NodePosition;
+import com.example.workflow.model.NodeStatus;
+import com.example.workflow.model.WorkflowConnection;
+import com.example.workflow.model.WorkflowDocument;
+import com.example.workflow.model.WorkflowExecutionEntity;
+import com.example.workflow.model.WorkflowJsonEntity;
+import com.example.workflow.model.WorkflowNodeData;
+import com.example.workflow.service.WorkflowDefinitionCache;
+import com.example.workflow.service.WorkflowMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Synthetic workflows and executions, and in-memory stand-ins for the Spring
+ * wiring the benchmarked services normally get
+ */
+final class BenchmarkFixtures {
+
+    static final String[] ROLES = { "reviewer", "approver", "finance", "legal", "manager" };
+
+    /** Installed for the entities, as JacksonConfig does at startup */
+    static final JsonMappers JSON_MAPPERS = new JsonMappers(new ObjectMapper());
+
+    static {
+        JsonMappers.install(JSON_MAPPERS);
+    }
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * A workflow with an upload node followed by alternating review and
+     * approval nodes, in the designer's document shape
+     */
+    static WorkflowJsonEntity workflow(long id, int nodeCount) {
+        List<WorkflowNodeData> nodes = new ArrayList<>();
+        List<WorkflowConnection> connections = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            WorkflowNodeData node = new WorkflowNodeData();
+            node.setId("node-" + i);
+            node.setName("Node " + i);
+            node.setDescription("Benchmark node " + i);
+            node.setOrder(i);
+            node.setPosition(new NodePosition((50 + i * 30) + "px", "120px"));
+            Map<String, String> props = new LinkedHashMap<>();
+            if (i == 0) {
+                node.setType("Upload");
+                props.put("documentType", "Invoice");
+            } else if (i % 2 == 1) {
+                node.setType("Document Review");
+                props.put("reviewerRole", ROLES[i % ROLES.length]);
+            } else {
+                node.setType("Approve/Reject");
+                props.put("Approver Role", ROLES[i % ROLES.length]);
+            }
+            node.setProps(props);
+            nodes.add(node);
+
+            if (i > 0) {
+                WorkflowConnection connection = new WorkflowConnection();
+                connection.setSource("node-" + (i - 1));
+                connection.setTarget("node-" + i);
+                connections.add(connection);
+            }
+        }
+
+        WorkflowJsonEntity entity = new WorkflowJsonEntity();
+        entity.setId(id);
+        entity.setName("Benchmark workflow " + id);
+        entity.setData(new WorkflowDocument(nodes, connections).toJson());
+        return entity;
+    }
+
+    /**
+     * An execution of a workflow at the given node, with workflow data
+     * collected by the nodes before it
+     */
+    static WorkflowExecutionEntity execution(long id, WorkflowJsonEntity workflow, int nodeCount,
+            int currentNodeIndex, String createdBy) {
+        WorkflowExecutionEntity execution = new WorkflowExecutionEntity();
+        execution.setId(id);
+        execution.setWorkflow(workflow);
+        execution.setStatus("In Progress");
+        execution.setCreatedBy(createdBy);
+        execution.setCurrentNodeIndex(currentNodeIndex);
+        execution.setNodeStatusArray(nodeStatuses(nodeCount, currentNodeIndex));
+        execution.setWorkflowData(workflowDataJson(currentNodeIndex));
+        return execution;
+    }
+
+    static NodeStatus[] nodeStatuses(int nodeCount, int currentNodeIndex) {
+        NodeStatus[] statuses = new NodeStatus[nodeCount];
+        Arrays.fill(statuses, NodeStatus.PENDING);
+        for (int i = 0; i < Math.min(currentNodeIndex, nodeCount); i++) {
+            statuses[i] = NodeStatus.COMPLETED;
+        }
+        if (currentNodeIndex < nodeCount) {
+            statuses[currentNodeIndex] = NodeStatus.IN_PROGRESS;
+        }
+        return statuses;
+    }
+
+    static Map<String, Object> workflowData(int entries) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("documentType", "Invoice");
+        for (int i = 0; i < entries; i++) {
+            data.put("field" + i, "value " + i);
+        }
+        data.put("reviewDecision", "Approved");
+        data.put("reviewNotes", "Looks complete");
+        return data;
+    }
+
+    static String workflowDataJson(int entries) {
+        try {
+            return JSON_MAPPERS.writer().writeValueAsString(workflowData(entries));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Implement a repository interface with the given handlers by method name.
+     * Any other repository method fails, so a benchmark cannot silently run
+     * against a stub that does nothing.
+     */
+    @SuppressWarnings("unchecked")
+    static <R> R repository(Class<R> type, Map<String, Function<Object[], Object>> handlers) {
+        return (R) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "toString":
+                    return "In-memory " + type.getSimpleName();
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    Function<Object[], Object> handler = handlers.get(method.getName());
+                    if (handler == null) {
+                        throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+                    }
+                    return handler.apply(args);
+            }
+        });
+    }
+
+    /**
+     * Metrics backed by an in-memory registry
+     */
+    static WorkflowMetrics metrics() {
+        return new WorkflowMetrics(new SimpleMeterRegistry());
+    }
+
+    /**
+     * A definition cache recording to an in-memory registry
+     */
+    static WorkflowDefinitionCache definitionCache() {
+        return new WorkflowDefinitionCache(256, metrics());
+    }
+
+    /**
+     * Set a field-injected dependency
+     */
+    static void inject(Object target, String fieldName, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot inject " + fieldName + " into " + target.getClass(), e);
+        }
+    }
+}
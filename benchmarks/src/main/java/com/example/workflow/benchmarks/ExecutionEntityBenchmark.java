@@ -0,0 +1,76 @@
+package com.example.workflow.benchmarks;
+
+import com.example.workflow.model.CompiledWorkflowDefinition;
+import com.example.workflow.model.NodeStatus;
+import com.example.workflow.model.WorkflowExecutionEntity;
+import com.example.workflow.model.WorkflowJsonEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading node statuses and workflow data from an execution row, both the
+ * first read after loading and repeated reads of the same instance
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionEntityBenchmark {
+
+    @Param({ "5", "20", "100" })
+    private int nodeCount;
+
+    @Param({ "10", "100" })
+    private int dataEntries;
+
+    private CompiledWorkflowDefinition definition;
+    private WorkflowExecutionEntity execution;
+    private String nodeStatusCodes;
+    private String workflowDataJson;
+
+    @Setup
+    public void setUp() {
+        WorkflowJsonEntity workflow = BenchmarkFixtures.workflow(1L, nodeCount);
+        definition = CompiledWorkflowDefinition.compile(workflow);
+        execution = BenchmarkFixtures.execution(1L, workflow, nodeCount, nodeCount / 2, "alice");
+        nodeStatusCodes = execution.getNodeStatusCodes();
+        workflowDataJson = BenchmarkFixtures.workflowDataJson(dataEntries);
+        execution.setWorkflowData(workflowDataJson);
+    }
+
+    @Benchmark
+    public NodeStatus[] decodeNodeStatuses() {
+        return NodeStatus.decode(nodeStatusCodes);
+    }
+
+    @Benchmark
+    public NodeStatus[] nodeStatusArray() {
+        return execution.getNodeStatusArray(definition);
+    }
+
+    @Benchmark
+    public Map<String, Object> workflowDataFirstRead() {
+        // Resets the parsed data, as a freshly loaded row would have it
+        execution.setWorkflowData(workflowDataJson);
+        return execution.getWorkflowDataAsMap();
+    }
+
+    @Benchmark
+    public Map<String, Object> workflowDataRepeatedRead() {
+        return execution.getWorkflowDataAsMap();
+    }
+}
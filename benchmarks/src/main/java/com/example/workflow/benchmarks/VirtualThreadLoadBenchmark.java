@@ -0,0 +1,150 @@
+package com.example.workflow.benchmarks;
+
+import com.example.workflow.service.RemoteOpaPolicyEvaluator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of request handling that blocks on I/O: a burst of concurrent
+ * requests, each making a blocking OPA allow decision through
+ * {@link RemoteOpaPolicyEvaluator} against a local stub server with a fixed
+ * latency and then waiting for a simulated database round trip.
+ *
+ * The platform executor has the Tomcat default of 200 threads, the virtual
+ * one mirrors {@code spring.threads.virtual.enabled=true}. Both run against
+ * the application's default limits: the OPA connection pool and its pending
+ * acquire queue, and a database pool of ten connections, so the virtual
+ * executor is measured with the pools as its only bound. The score is the
+ * time to complete the whole burst; throughput is requests divided by it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadLoadBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int OPA_MAX_CONNECTIONS = 50;
+    private static final int OPA_MAX_PENDING_ACQUIRES = 1000;
+    private static final int DB_POOL_SIZE = 10;
+    private static final byte[] ALLOW_RESPONSE = "{\"result\":true}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({ "platform", "virtual" })
+    private String executor;
+
+    @Param({ "200", "1000" })
+    private int requests;
+
+    @Param({ "10" })
+    private int opaLatencyMillis;
+
+    @Param({ "5" })
+    private int dbLatencyMillis;
+
+    private HttpServer opaStub;
+    private RemoteOpaPolicyEvaluator evaluator;
+    private Semaphore dbConnections;
+    private ExecutorService requestExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        opaStub = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        opaStub.createContext("/v1/data/", this::allow);
+        // The stub must not be the bottleneck under either executor
+        opaStub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        opaStub.start();
+
+        String opaUrl = "http://127.0.0.1:" + opaStub.getAddress().getPort();
+        evaluator = new RemoteOpaPolicyEvaluator(opaUrl, OPA_MAX_CONNECTIONS, OPA_MAX_PENDING_ACQUIRES,
+                Duration.ofSeconds(1), Duration.ofSeconds(10), Duration.ofSeconds(10), 0, Integer.MAX_VALUE,
+                Duration.ofSeconds(1));
+        dbConnections = new Semaphore(DB_POOL_SIZE, true);
+
+        requestExecutor = "virtual".equals(executor)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requestExecutor.shutdownNow();
+        opaStub.stop(0);
+    }
+
+    @Benchmark
+    public int burst() throws Exception {
+        List<Future<Boolean>> responses = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            Map<String, Object> input = Map.of("user", "user" + i, "action", "approve");
+            responses.add(requestExecutor.submit(() -> handleRequest(input)));
+        }
+
+        int allowed = 0;
+        for (Future<Boolean> response : responses) {
+            if (response.get()) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    private boolean handleRequest(Map<String, Object> input) throws InterruptedException {
+        boolean allowed = evaluator.evaluateAllow("workflow_1", input);
+        // Stands in for a JDBC query on a pooled connection, which blocks the
+        // calling thread the same way
+        dbConnections.acquire();
+        try {
+            Thread.sleep(dbLatencyMillis);
+        } finally {
+            dbConnections.release();
+        }
+        return allowed;
+    }
+
+    private void allow(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes();
+        }
+        try {
+            Thread.sleep(opaLatencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, ALLOW_RESPONSE.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(ALLOW_RESPONSE);
+        }
+    }
+}
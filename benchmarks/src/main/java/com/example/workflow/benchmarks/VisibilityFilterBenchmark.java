@@ -0,0 +1,191 @@
+package com.example.workflow.benchmarks;
+
+import com.example.workflow.entity.OrganizationEntity;
+import com.example.workflow.model.WorkflowExecutionEntity;
+import com.example.workflow.model.WorkflowJsonEntity;
+import com.example.workflow.repository.WorkflowExecutionRepository;
+import com.example.workflow.service.WorkflowDefinitionCache;
+import com.example.workflow.service.WorkflowExecutionService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The execution list query users hit:
+ * {@link WorkflowExecutionService#findVisibleExecutions} and
+ * {@link WorkflowExecutionService#countVisibleExecutions}, i.e. the executions
+ * of the user's organization they started plus the ones whose current node
+ * requires one of their roles, run by Hibernate against PostgreSQL.
+ *
+ * Needs a PostgreSQL database, configured like the application through
+ * POSTGRESQL_HOST (the JDBC URL), POSTGRESQL_USER and POSTGRESQL_PASSWORD.
+ * The data is seeded into its own schema, which is dropped afterwards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VisibilityFilterBenchmark {
+
+    private static final String SCHEMA = "visibility_benchmark";
+    private static final int ORGANIZATION_COUNT = 10;
+    private static final int WORKFLOW_COUNT = 10;
+    private static final int USER_COUNT = 50;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({ "1000", "10000", "100000" })
+    private int executionCount;
+
+    @Param({ "5" })
+    private int nodeCount;
+
+    private DriverManagerDataSource dataSource;
+    private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+    private WorkflowExecutionService executionService;
+    private OrganizationEntity organization;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new DriverManagerDataSource(env("POSTGRESQL_HOST"), env("POSTGRESQL_USER"),
+                env("POSTGRESQL_PASSWORD"));
+        new JdbcTemplate(dataSource).execute("create schema if not exists " + SCHEMA);
+
+        Properties jpaProperties = new Properties();
+        jpaProperties.put("hibernate.default_schema", SCHEMA);
+        jpaProperties.put("hibernate.hbm2ddl.auto", "create");
+        jpaProperties.put("hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName());
+        jpaProperties.put("hibernate.jdbc.batch_size", "500");
+        jpaProperties.put("hibernate.order_inserts", "true");
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(dataSource);
+        entityManagerFactoryBean.setPackagesToScan("com.example.workflow.model", "com.example.workflow.entity");
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactoryBean.setJpaProperties(jpaProperties);
+        entityManagerFactoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+
+        organization = seed(entityManagerFactory);
+
+        // A fresh persistence context per call, as in a request
+        WorkflowExecutionRepository repository = new JpaRepositoryFactory(
+                SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory))
+                .getRepository(WorkflowExecutionRepository.class);
+        executionService = new WorkflowExecutionService(repository);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactoryBean.destroy();
+        new JdbcTemplate(dataSource).execute("drop schema if exists " + SCHEMA + " cascade");
+    }
+
+    /**
+     * Spread the executions over the organizations, workflows and users, and
+     * return the organization of the benchmarked user
+     */
+    private OrganizationEntity seed(EntityManagerFactory entityManagerFactory) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            List<OrganizationEntity> organizations = new ArrayList<>();
+            for (int i = 0; i < ORGANIZATION_COUNT; i++) {
+                OrganizationEntity organization = new OrganizationEntity();
+                organization.setId("org-" + i);
+                organization.setName("Organization " + i);
+                organization.setCreatedAt(LocalDateTime.now());
+                entityManager.persist(organization);
+                organizations.add(organization);
+            }
+
+            List<WorkflowJsonEntity> workflows = new ArrayList<>();
+            for (int i = 0; i < WORKFLOW_COUNT; i++) {
+                WorkflowJsonEntity workflow = BenchmarkFixtures.workflow(i + 1L, nodeCount);
+                workflow.setId(null);
+                workflow.setOrganization(organizations.get(i % ORGANIZATION_COUNT));
+                entityManager.persist(workflow);
+                workflows.add(workflow);
+            }
+
+            WorkflowDefinitionCache definitionCache = BenchmarkFixtures.definitionCache();
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < executionCount; i++) {
+                WorkflowJsonEntity workflow = workflows.get(i % WORKFLOW_COUNT);
+                WorkflowExecutionEntity execution = BenchmarkFixtures.execution(i + 1L, workflow, nodeCount,
+                        i % nodeCount, "user" + (i % USER_COUNT));
+                execution.setId(null);
+                execution.setOrganization(workflow.getOrganization());
+                execution.setUploadedFileName("invoice-" + i + ".pdf");
+                execution.setUpdatedAt(now.minusSeconds(i));
+                execution.updateCurrentNodeColumns(definitionCache.getCompiled(workflow));
+                entityManager.persist(execution);
+                if (i % 500 == 499) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+            entityManager.getTransaction().commit();
+            return organizations.get(0);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static String env(String name) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalStateException(name + " must be set to run the visibility filter benchmark");
+        }
+        return value;
+    }
+
+    @Benchmark
+    public List<WorkflowExecutionEntity> firstPageForReviewer() {
+        return executionService.findVisibleExecutions("user7", List.of("reviewer"), organization, "",
+                PageRequest.of(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<WorkflowExecutionEntity> filteredPageForReviewer() {
+        return executionService.findVisibleExecutions("user7", List.of("reviewer"), organization, "invoice-1",
+                PageRequest.of(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<WorkflowExecutionEntity> firstPageForUserWithoutRoles() {
+        return executionService.findVisibleExecutions("user7", List.of(), organization, "",
+                PageRequest.of(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public long countForReviewer() {
+        return executionService.countVisibleExecutions("user7", List.of("reviewer"), organization, "");
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.workflow.benchmarks;
+
+import com.example.workflow.components.nodes.WorkflowNode;
+import com.example.workflow.components.nodes.WorkflowNodeFactory;
+import com.example.workflow.model.CompiledWorkflowDefinition;
+import com.example.workflow.model.WorkflowDefinition;
+import com.example.workflow.model.WorkflowDocument;
+import com.example.workflow.model.WorkflowJsonEntity;
+import com.example.workflow.service.WorkflowDefinitionCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a stored workflow into a definition, with and without the
+ * definition cache, and creating single nodes from their map form
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkflowDefinitionBenchmark {
+
+    @Param({ "5", "20", "100" })
+    private int nodeCount;
+
+    private WorkflowJsonEntity workflow;
+    private WorkflowDefinitionCache definitionCache;
+    private Map<String, Object> nodeData;
+
+    @Setup
+    public void setUp() {
+        workflow = BenchmarkFixtures.workflow(1L, nodeCount);
+        definitionCache = BenchmarkFixtures.definitionCache();
+        definitionCache.getCompiled(workflow);
+
+        Map<String, String> props = new HashMap<>();
+        props.put("reviewerRole", "reviewer");
+        nodeData = new HashMap<>();
+        nodeData.put("type", "Document Review");
+        nodeData.put("name", "Review");
+        nodeData.put("description", "Review the uploaded document");
+        nodeData.put("props", props);
+    }
+
+    @Benchmark
+    public WorkflowDocument parseDocument() {
+        return WorkflowDocument.parse(workflow.getData());
+    }
+
+    @Benchmark
+    public CompiledWorkflowDefinition compileDefinition() {
+        return CompiledWorkflowDefinition.compile(workflow);
+    }
+
+    @Benchmark
+    public WorkflowDefinition newDefinition() {
+        return new WorkflowDefinition(workflow);
+    }
+
+    @Benchmark
+    public WorkflowDefinition cachedDefinition() {
+        return definitionCache.getDefinition(workflow);
+    }
+
+    @Benchmark
+    public WorkflowNode nodeFromMap() {
+        return WorkflowNodeFactory.fromMap(nodeData);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.workflow.components;
+
+import com.vaadin.flow.component.upload.Receiver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Upload receiver that streams the file to a temporary file instead of
+ * buffering it in memory.
+ *
+ * The SHA-256 checksum and size are computed while the bytes are written, and
+ * the upload is aborted as soon as it exceeds the configured maximum size.
+ * Callers own the temporary file and must call {@link #discard()} once its
+ * content has been stored.
+ */
+public class StreamingUploadReceiver implements Receiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingUploadReceiver.class);
+
+    private final long maxSize;
+
+    private Path file;
+    private String fileName;
+    private String mimeType;
+    private MessageDigest digest;
+    private String sha256;
+    private long size;
+
+    public StreamingUploadReceiver(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public OutputStream receiveUpload(String fileName, String mimeType) {
+        discard();
+        try {
+            this.file = Files.createTempFile("workflow-upload-", ".tmp");
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+            this.digest = MessageDigest.getInstance("SHA-256");
+            this.sha256 = null;
+            this.size = 0;
+
+            OutputStream out = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file)), digest);
+            return new SizeLimitingOutputStream(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create temporary upload file", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Delete the temporary file of the last upload, if any
+     */
+    public void discard() {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete temporary upload file {}: {}", file, e.getMessage());
+            }
+            file = null;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the hex encoded SHA-256 checksum of the last completed upload
+     */
+    public String getSha256() {
+        if (sha256 == null && digest != null) {
+            sha256 = HexFormat.of().formatHex(digest.digest());
+        }
+        return sha256;
+    }
+
+    private class SizeLimitingOutputStream extends FilterOutputStream {
+
+        SizeLimitingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkSize(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkSize(len);
+            out.write(b, off, len);
+        }
+
+        private void checkSize(int len) throws IOException {
+            size += len;
+            if (size > maxSize) {
+                throw new IOException("Upload exceeds the maximum size of " + maxSize + " bytes");
+            }
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.example.workflow.components;
 import com.example.workflow.components.nodes.WorkflowNode;
 import com.example.workflow.model.WorkflowDefinition;
 import com.example.workflow.model.WorkflowExecutionEntity;
+import com.example.workflow.service.DocumentStorageService;
+import com.example.workflow.service.ExecutionConflictException;
 import com.example.workflow.service.WorkflowExecutionEngine;
 import com.example.workflow.views.WorkflowUseView;
 import com.vaadin.flow.component.Component;
@@ -120,14 +122,21 @@ public class WorkflowExecutionComponent extends VerticalLayout {
             // Disable UI interactions during processing
             contentArea.setEnabled(false);
 
-            // Update the execution with current context
+            // Update the execution with current context; the view shows the
+            // step when the engine publishes it after commit
             executionEngine.advanceWorkflow(execution, executionContext);
+            // Lets nodes know the execution now references what they submitted
+            executionContext.put("advanced", true);
 
-            // Force a complete refresh of the UI
+        } catch (ExecutionConflictException e) {
+            // Another user acted on this step first; show their result instead
+            Notification.show("This step was already completed by another user. Showing the latest state.",
+                    5000, Notification.Position.MIDDLE);
             if (executionContext.containsKey("forceCompleteRefresh")) {
                 ((Runnable) executionContext.get("forceCompleteRefresh")).run();
+            } else {
+                contentArea.setEnabled(true);
             }
-
         } catch (Exception e) {
             Notification.show("Error advancing workflow: " + e.getMessage());
             contentArea.setEnabled(true);
@@ -168,16 +177,12 @@ public class WorkflowExecutionComponent extends VerticalLayout {
             summaryLayout.add(docInfo);
 
             // Add document download button
-            if (execution.getUploadedDocument() != null) {
+            if (execution.getDocumentId() != null) {
                 Button downloadButton = new Button("Download Document");
                 downloadButton.getStyle().set("background-color", "#2196F3").set("color", "white");
 
-                com.vaadin.flow.server.StreamResource resource = new com.vaadin.flow.server.StreamResource(
-                        execution.getUploadedFileName(),
-                        () -> new java.io.ByteArrayInputStream(execution.getUploadedDocument()));
-
-                com.vaadin.flow.component.html.Anchor downloadLink = new com.vaadin.flow.component.html.Anchor(resource,
-                        "");
+                com.vaadin.flow.component.html.Anchor downloadLink = new com.vaadin.flow.component.html.Anchor(
+                        DocumentStorageService.executionDocumentUrl(execution.getId()), "");
                 downloadLink.getElement().setAttribute("download", true);
                 downloadLink.add(downloadButton);
 
@@ -1,5 +1,6 @@
 package com.example.workflow.components.nodes;
 
+import com.example.workflow.service.DocumentStorageService;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.dialog.Dialog;
@@ -19,6 +20,7 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 public class ApprovalNode extends WorkflowNode {
@@ -73,7 +75,7 @@ public class ApprovalNode extends WorkflowNode {
 
         // Get necessary context data
         Long workflowId = (Long) executionContext.get("workflowId");
-        byte[] uploadedDocument = (byte[]) executionContext.get("uploadedDocument");
+        Long documentId = (Long) executionContext.get("documentId");
         String uploadedFileName = (String) executionContext.get("uploadedFileName");
 
         // Get OPA service from context
@@ -88,14 +90,8 @@ public class ApprovalNode extends WorkflowNode {
         // Check if user has approval permissions
         Collection<? extends GrantedAuthority> authorities = SecurityContextHolder.getContext()
                 .getAuthentication().getAuthorities();
-        boolean canApprove = false;
-        for (GrantedAuthority authority : authorities) {
-            String role = authority.getAuthority();
-            if (opaService.isActionAllowed(workflowId, "approve", role)) {
-                canApprove = true;
-                break;
-            }
-        }
+        List<String> roles = authorities.stream().map(GrantedAuthority::getAuthority).toList();
+        boolean canApprove = opaService.isActionAllowedForAnyRole(workflowId, "approve", roles);
 
         if (!canApprove) {
             Div notAllowedDiv = new Div();
@@ -113,7 +109,7 @@ public class ApprovalNode extends WorkflowNode {
         }
 
         // Check if document exists
-        if (uploadedDocument == null) {
+        if (documentId == null) {
             Div noDocDiv = new Div();
             noDocDiv.addClassName("notification-panel");
             noDocDiv.addClassName("warning");
@@ -165,7 +161,8 @@ public class ApprovalNode extends WorkflowNode {
                 .set("background-color", "var(--primary-color)")
                 .set("color", "white");
         viewDocButton.addClickListener(e -> {
-            showDocumentViewer(uploadedFileName, uploadedDocument, layout);
+            showDocumentViewer(uploadedFileName,
+                    DocumentStorageService.executionDocumentUrl((Long) executionContext.get("executionId")), layout);
         });
 
         TextArea approvalNotes = new TextArea("Approval Notes");
@@ -310,7 +307,7 @@ public class ApprovalNode extends WorkflowNode {
         return layout;
     }
 
-    private void showDocumentViewer(String fileName, byte[] content, VerticalLayout parentLayout) {
+    private void showDocumentViewer(String fileName, String documentUrl, VerticalLayout parentLayout) {
         com.vaadin.flow.component.dialog.Dialog viewerDialog = new com.vaadin.flow.component.dialog.Dialog();
         viewerDialog.setWidth("80%");
         viewerDialog.setHeight("80%");
@@ -344,16 +341,12 @@ public class ApprovalNode extends WorkflowNode {
         contentContainer.getStyle().set("flex-grow", "1").set("overflow", "auto");
 
         if (fileName.toLowerCase().endsWith(".pdf")) {
-            com.vaadin.flow.server.StreamResource resource = new com.vaadin.flow.server.StreamResource(
-                    fileName, () -> new java.io.ByteArrayInputStream(content));
             com.vaadin.componentfactory.pdfviewer.PdfViewer pdfViewer = new com.vaadin.componentfactory.pdfviewer.PdfViewer();
-            pdfViewer.setSrc(resource);
+            pdfViewer.setSrc(documentUrl);
             pdfViewer.setSizeFull();
             contentContainer.add(pdfViewer);
         } else if (fileName.toLowerCase().matches(".*\\.(jpg|jpeg|png|gif)$")) {
-            com.vaadin.flow.server.StreamResource resource = new com.vaadin.flow.server.StreamResource(
-                    fileName, () -> new java.io.ByteArrayInputStream(content));
-            com.vaadin.flow.component.html.Image image = new com.vaadin.flow.component.html.Image(resource, "Document");
+            com.vaadin.flow.component.html.Image image = new com.vaadin.flow.component.html.Image(documentUrl, "Document");
             image.setMaxWidth("100%");
             image.getStyle().set("display", "block").set("margin", "0 auto");
             contentContainer.add(image);
@@ -363,9 +356,7 @@ public class ApprovalNode extends WorkflowNode {
             unsupportedDiv.addClassName("warning");
             unsupportedDiv.setText("Preview not available for this file type.");
 
-            com.vaadin.flow.server.StreamResource resource = new com.vaadin.flow.server.StreamResource(
-                    fileName, () -> new java.io.ByteArrayInputStream(content));
-            com.vaadin.flow.component.html.Anchor downloadLink = new com.vaadin.flow.component.html.Anchor(resource,
+            com.vaadin.flow.component.html.Anchor downloadLink = new com.vaadin.flow.component.html.Anchor(documentUrl,
                     "Download");
             downloadLink.getElement().setAttribute("download", true);
             downloadLink.getStyle()
@@ -1,5 +1,6 @@
 package com.example.workflow.components.nodes;
 
+import com.example.workflow.service.DocumentStorageService;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.html.Div;
@@ -18,6 +19,7 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 public class ReviewNode extends WorkflowNode {
@@ -72,7 +74,7 @@ public class ReviewNode extends WorkflowNode {
 
         // Get necessary context data
         Long workflowId = (Long) executionContext.get("workflowId");
-        byte[] uploadedDocument = (byte[]) executionContext.get("uploadedDocument");
+        Long documentId = (Long) executionContext.get("documentId");
         String uploadedFileName = (String) executionContext.get("uploadedFileName");
 
         // Get OPA service from context
@@ -87,14 +89,8 @@ public class ReviewNode extends WorkflowNode {
         // Check if user has review permissions
         Collection<? extends GrantedAuthority> authorities = SecurityContextHolder.getContext()
                 .getAuthentication().getAuthorities();
-        boolean canReview = false;
-        for (GrantedAuthority authority : authorities) {
-            String role = authority.getAuthority();
-            if (opaService.isActionAllowed(workflowId, "review", role)) {
-                canReview = true;
-                break;
-            }
-        }
+        List<String> roles = authorities.stream().map(GrantedAuthority::getAuthority).toList();
+        boolean canReview = opaService.isActionAllowedForAnyRole(workflowId, "review", roles);
 
         if (!canReview) {
             Div notAllowedDiv = new Div();
@@ -112,7 +108,7 @@ public class ReviewNode extends WorkflowNode {
         }
 
         // Check if document exists
-        if (uploadedDocument == null) {
+        if (documentId == null) {
             Div noDocDiv = new Div();
             noDocDiv.addClassName("notification-panel");
             noDocDiv.addClassName("warning");
@@ -164,7 +160,8 @@ public class ReviewNode extends WorkflowNode {
                 .set("background-color", "var(--primary-color)")
                 .set("color", "white");
         viewDocButton.addClickListener(e -> {
-            showDocumentViewer(uploadedFileName, uploadedDocument, layout);
+            showDocumentViewer(uploadedFileName,
+                    DocumentStorageService.executionDocumentUrl((Long) executionContext.get("executionId")), layout);
         });
 
         TextArea notes = new TextArea("Review Notes");
@@ -269,7 +266,7 @@ public class ReviewNode extends WorkflowNode {
         return layout;
     }
 
-    private void showDocumentViewer(String fileName, byte[] content, VerticalLayout parentLayout) {
+    private void showDocumentViewer(String fileName, String documentUrl, VerticalLayout parentLayout) {
         com.vaadin.flow.component.dialog.Dialog viewerDialog = new com.vaadin.flow.component.dialog.Dialog();
         viewerDialog.setWidth("80%");
         viewerDialog.setHeight("80%");
@@ -303,16 +300,12 @@ public class ReviewNode extends WorkflowNode {
         contentContainer.getStyle().set("flex-grow", "1").set("overflow", "auto");
 
         if (fileName.toLowerCase().endsWith(".pdf")) {
-            com.vaadin.flow.server.StreamResource resource = new com.vaadin.flow.server.StreamResource(
-                    fileName, () -> new java.io.ByteArrayInputStream(content));
             com.vaadin.componentfactory.pdfviewer.PdfViewer pdfViewer = new com.vaadin.componentfactory.pdfviewer.PdfViewer();
-            pdfViewer.setSrc(resource);
+            pdfViewer.setSrc(documentUrl);
             pdfViewer.setSizeFull();
             contentContainer.add(pdfViewer);
         } else if (fileName.toLowerCase().matches(".*\\.(jpg|jpeg|png|gif)$")) {
-            com.vaadin.flow.server.StreamResource resource = new com.vaadin.flow.server.StreamResource(
-                    fileName, () -> new java.io.ByteArrayInputStream(content));
-            com.vaadin.flow.component.html.Image image = new com.vaadin.flow.component.html.Image(resource, "Document");
+            com.vaadin.flow.component.html.Image image = new com.vaadin.flow.component.html.Image(documentUrl, "Document");
             image.setMaxWidth("100%");
             image.getStyle().set("display", "block").set("margin", "0 auto");
             contentContainer.add(image);
@@ -322,9 +315,7 @@ public class ReviewNode extends WorkflowNode {
             unsupportedDiv.addClassName("warning");
             unsupportedDiv.setText("Preview not available for this file type.");
 
-            com.vaadin.flow.server.StreamResource resource = new com.vaadin.flow.server.StreamResource(
-                    fileName, () -> new java.io.ByteArrayInputStream(content));
-            com.vaadin.flow.component.html.Anchor downloadLink = new com.vaadin.flow.component.html.Anchor(resource,
+            com.vaadin.flow.component.html.Anchor downloadLink = new com.vaadin.flow.component.html.Anchor(documentUrl,
                     "Download");
             downloadLink.getElement().setAttribute("download", true);
             downloadLink.getStyle()
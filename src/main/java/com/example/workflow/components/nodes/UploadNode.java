@@ -1,5 +1,7 @@
 package com.example.workflow.components.nodes;
 
+import com.example.workflow.components.StreamingUploadReceiver;
+import com.example.workflow.service.DocumentStorageService;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.html.Div;
@@ -14,9 +16,9 @@ import com.vaadin.flow.component.orderedlayout.FlexComponent.JustifyContentMode;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -79,13 +81,11 @@ public class UploadNode extends WorkflowNode {
         com.example.workflow.service.WorkflowOPAService opaService = (com.example.workflow.service.WorkflowOPAService) opaServiceObj;
 
         // Get execution context
-        Long workflowId = (Long) executionContext.get("workflowId");
         Long executionId = (Long) executionContext.get("executionId");
         String currentUsername = getCurrentUsername();
 
-        // Check upload permissions using execution-specific policy
-        String uploadPolicyPackage = "workflow_" + workflowId + "_" + executionId;
-        boolean canUpload = opaService.isActionAllowed(uploadPolicyPackage, "upload", currentUsername, "username");
+        // Check upload permissions against the execution ACL
+        boolean canUpload = opaService.isUploadAllowed(executionId, currentUsername);
 
         if (!canUpload) {
             Div notAllowedDiv = new Div();
@@ -156,8 +156,17 @@ public class UploadNode extends WorkflowNode {
                 .set("padding", "1.5rem")
                 .set("margin-top", "1rem");
 
-        MemoryBuffer buffer = new MemoryBuffer();
-        Upload upload = new Upload(buffer);
+        DocumentStorageService documentService = (DocumentStorageService) executionContext.get("documentService");
+        if (documentService == null) {
+            layout.add(new Paragraph("Document service not available"));
+            return layout;
+        }
+
+        // Stream the upload to a temporary file; only the stored document id goes into the context
+        StreamingUploadReceiver receiver = new StreamingUploadReceiver(documentService.getMaxUploadSize());
+        AtomicReference<Long> pendingDocumentId = new AtomicReference<>();
+        Upload upload = new Upload(receiver);
+        upload.setMaxFileSize((int) Math.min(receiver.getMaxSize(), Integer.MAX_VALUE));
         upload.setAcceptedFileTypes("application/pdf", "image/*", "application/msword",
                 "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
 
@@ -178,11 +187,14 @@ public class UploadNode extends WorkflowNode {
 
         upload.addSucceededListener(event -> {
             try {
-                java.io.InputStream inputStream = buffer.getInputStream();
-                byte[] bytes = inputStream.readAllBytes();
+                Long documentId = documentService.store(receiver.getFile(), event.getFileName(),
+                        event.getMIMEType(), receiver.getSha256());
+
+                // A replaced upload that was never submitted is no longer referenced
+                documentService.delete(pendingDocumentId.getAndSet(documentId));
 
                 // Update execution context with uploaded document
-                executionContext.put("uploadedDocument", bytes);
+                executionContext.put("documentId", documentId);
                 executionContext.put("uploadedFileName", event.getFileName());
                 executionContext.put("mimeType", event.getMIMEType());
 
@@ -190,7 +202,8 @@ public class UploadNode extends WorkflowNode {
                 Map<String, Object> docData = Map.of(
                         "fileName", event.getFileName(),
                         "mimeType", event.getMIMEType(),
-                        "size", event.getContentLength());
+                        "size", receiver.getSize(),
+                        "sha256", receiver.getSha256());
                 workflowData.put("uploadedDocument", docData);
 
                 // Clear the return status if this is a re-upload
@@ -217,9 +230,20 @@ public class UploadNode extends WorkflowNode {
                 nextButton.setEnabled(true);
             } catch (Exception e) {
                 Notification.show("Error processing file: " + e.getMessage());
+            } finally {
+                receiver.discard();
             }
         });
 
+        upload.addFailedListener(event -> {
+            receiver.discard();
+            Notification.show("Upload failed: " + event.getReason().getMessage(),
+                    5000, Notification.Position.MIDDLE);
+        });
+
+        upload.addFileRejectedListener(event -> Notification.show(event.getErrorMessage(),
+                5000, Notification.Position.MIDDLE));
+
         nextButton.addClickListener(e -> {
             // Disable button immediately to prevent double-clicks
             nextButton.setEnabled(false);
@@ -250,6 +274,34 @@ public class UploadNode extends WorkflowNode {
                 Notification.show("Cannot advance workflow: Missing completion handler",
                         3000, Notification.Position.MIDDLE);
             }
+
+            if (Boolean.TRUE.equals(executionContext.get("advanced"))) {
+                // The execution owns the document now
+                pendingDocumentId.set(null);
+            } else {
+                // The advance failed, so nothing references the stored upload;
+                // release it and let the user upload again
+                documentService.delete(pendingDocumentId.getAndSet(null));
+                executionContext.remove("documentId");
+                upload.clearFileList();
+                upload.getElement().setProperty("nodrop", false);
+                upload.getElement().removeAttribute("disabled");
+                nextButton.setText("Submit Document");
+                nextButton.setIcon(new Icon(VaadinIcon.CHECK));
+                this.status = "Pending";
+                executionContext.put("advanceWorkflow", false);
+                statusBadge.setText("Pending");
+                statusBadge.removeClassName("completed");
+                statusBadge.addClassName("pending");
+            }
+        });
+
+        // Leaving the node (navigating away, closing the UI, or the view being
+        // rebuilt after another user's step) releases an upload that was never submitted
+        layout.addDetachListener(event -> {
+            if (!Boolean.TRUE.equals(executionContext.get("advanced"))) {
+                documentService.delete(pendingDocumentId.getAndSet(null));
+            }
         });
 
         // Add instructions
@@ -0,0 +1,35 @@
+package com.example.workflow.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wraps the Spring Boot configured {@link ObjectMapper} in the
+ * {@link JsonMappers} bean, and installs it for entities and other code
+ * outside the Spring context.
+ */
+@Configuration
+public class JacksonConfig {
+
+    private final JsonMappers jsonMappers;
+
+    public JacksonConfig(ObjectMapper objectMapper) {
+        this.jsonMappers = new JsonMappers(objectMapper);
+    }
+
+    @Bean
+    public JsonMappers jsonMappers() {
+        return jsonMappers;
+    }
+
+    /**
+     * Runs before any bean that injects {@link JsonMappers} is created, so
+     * entities loaded by those beans find the mappers installed.
+     */
+    @PostConstruct
+    public void installSharedJsonMappers() {
+        JsonMappers.install(jsonMappers);
+    }
+}
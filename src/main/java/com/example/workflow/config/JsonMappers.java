@@ -0,0 +1,119 @@
+package com.example.workflow.config;
+
+import com.example.workflow.model.WorkflowConnection;
+import com.example.workflow.model.WorkflowDocument;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared Jackson mapper with pre-built readers for the JSON shapes stored by
+ * the application.
+ *
+ * A Spring bean wrapping the Spring Boot configured mapper, see
+ * {@link JacksonConfig}; services and views get it injected. Entities and
+ * other classes outside the Spring context use {@link #shared()}, which
+ * {@link JacksonConfig} sets once at startup. Readers and writers are
+ * immutable and thread-safe, so type resolution happens once instead of on
+ * every call.
+ */
+public final class JsonMappers {
+
+    private static volatile JsonMappers shared;
+
+    private final ObjectMapper mapper;
+    private final ObjectReader treeReader;
+    private final ObjectReader dataMapReader;
+    private final ObjectReader statusMapReader;
+    private final ObjectReader connectionListReader;
+    private final ObjectReader workflowDocumentReader;
+    private final ObjectWriter writer;
+
+    public JsonMappers(ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.treeReader = mapper.reader();
+        this.dataMapReader = mapper.readerFor(new TypeReference<Map<String, Object>>() {
+        });
+        this.statusMapReader = mapper.readerFor(new TypeReference<Map<String, String>>() {
+        });
+        this.connectionListReader = mapper.readerFor(new TypeReference<List<WorkflowConnection>>() {
+        });
+        this.workflowDocumentReader = mapper.readerFor(WorkflowDocument.class);
+        this.writer = mapper.writer();
+    }
+
+    /**
+     * Make the given mappers available to entities through {@link #shared()}.
+     * Called once at startup by {@link JacksonConfig}, and by tests that use
+     * entities without a Spring context.
+     */
+    public static void install(JsonMappers mappers) {
+        shared = mappers;
+    }
+
+    /**
+     * The mappers for entities and other classes outside the Spring context
+     *
+     * @throws IllegalStateException if none have been installed yet
+     */
+    public static JsonMappers shared() {
+        JsonMappers mappers = shared;
+        if (mappers == null) {
+            throw new IllegalStateException("JsonMappers have not been installed yet");
+        }
+        return mappers;
+    }
+
+    /**
+     * The application mapper, for shapes without a dedicated reader
+     */
+    public ObjectMapper mapper() {
+        return mapper;
+    }
+
+    /**
+     * Reader for untyped JSON trees, e.g. event payloads
+     */
+    public ObjectReader treeReader() {
+        return treeReader;
+    }
+
+    /**
+     * Reader for a map of workflow data or event payload values
+     */
+    public ObjectReader dataMapReader() {
+        return dataMapReader;
+    }
+
+    /**
+     * Reader for a map from node name to status label
+     */
+    public ObjectReader statusMapReader() {
+        return statusMapReader;
+    }
+
+    /**
+     * Reader for the node connections drawn in the workflow editor
+     */
+    public ObjectReader connectionListReader() {
+        return connectionListReader;
+    }
+
+    /**
+     * Reader for the workflow JSON in either stored shape
+     */
+    public ObjectReader workflowDocumentReader() {
+        return workflowDocumentReader;
+    }
+
+    /**
+     * Writer for any of the stored shapes
+     */
+    public ObjectWriter writer() {
+        return writer;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.workflow.config;
+
+import org.slf4j.MDC;
+
+/**
+ * MDC fields added to log lines, see logging.pattern.level.
+ *
+ * Values are set for the duration of a scope and the previous value is
+ * restored when it closes, so nested scopes (e.g. an execution advanced
+ * within a request) do not clear the fields of the outer one.
+ */
+public final class LogContext {
+
+    public static final String ORGANIZATION_ID = "orgId";
+    public static final String WORKFLOW_ID = "workflowId";
+    public static final String EXECUTION_ID = "executionId";
+
+    private LogContext() {
+    }
+
+    /**
+     * Set an MDC field until the returned scope is closed. A null value leaves
+     * the field unchanged.
+     */
+    public static Scope put(String key, Object value) {
+        String previous = MDC.get(key);
+        if (value != null) {
+            MDC.put(key, String.valueOf(value));
+        }
+        return new Scope(key, previous);
+    }
+
+    /**
+     * Set the workflow and execution id fields until the returned scope is closed
+     */
+    public static Scope execution(Long workflowId, Long executionId) {
+        Scope workflowScope = put(WORKFLOW_ID, workflowId);
+        Scope executionScope = put(EXECUTION_ID, executionId);
+        return new Scope(null, null) {
+            @Override
+            public void close() {
+                executionScope.close();
+                workflowScope.close();
+            }
+        };
+    }
+
+    public static class Scope implements AutoCloseable {
+
+        private final String key;
+        private final String previous;
+
+        private Scope(String key, String previous) {
+            this.key = key;
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous != null) {
+                MDC.put(key, previous);
+            } else {
+                MDC.remove(key);
+            }
+        }
+    }
+}
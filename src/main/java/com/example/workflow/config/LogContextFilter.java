@@ -0,0 +1,34 @@
+package com.example.workflow.config;
+
+import com.example.workflow.service.OrganizationService;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Adds the organization of the current user to the log context of each
+ * request. Runs after the security filter chain, which sets up the
+ * authentication the organization is read from.
+ */
+@Component
+public class LogContextFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private OrganizationService organizationService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (LogContext.Scope scope = LogContext.put(LogContext.ORGANIZATION_ID,
+                organizationService.getCurrentOrganizationId())) {
+            chain.doFilter(request, response);
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.example.workflow.config;
 import java.util.Collection;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
@@ -15,6 +18,7 @@ import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.security.config.Customizer;
@@ -23,6 +27,8 @@ import org.springframework.security.config.Customizer;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(SecurityConfig.class);
+
     private final Environment env;
 
     // Constructor injection
@@ -39,6 +45,7 @@ public class SecurityConfig {
         String keycloakBaseUrl = env.getProperty("KEYCLOAK_BASE_URL");
         String keycloakRealm = env.getProperty("KEYCLOAK_REALM");
         String serverPort = env.getProperty("server.port");
+        String managementPort = env.getProperty("management.server.port");
 
         // Configure CSRF with Vaadin support
         http.csrf(csrf -> csrf
@@ -56,6 +63,13 @@ public class SecurityConfig {
             req.requestMatchers("VAADIN/**", "/favicon.ico").permitAll();
             req.requestMatchers("/manifest.webmanifest", "/favicon.ico", "/images/**", "/offline-stub.html")
                     .permitAll();
+            // Health checks and the Prometheus scraper cannot log in through Keycloak;
+            // they are open only on the separate management port, never on the
+            // application port
+            RequestMatcher managementPortRequest = request -> managementPort != null
+                    && managementPort.equals(String.valueOf(request.getLocalPort()));
+            req.requestMatchers(new AndRequestMatcher(EndpointRequest.to("health", "prometheus"),
+                    managementPortRequest)).permitAll();
             req.anyRequest().authenticated();
         });
         http.oauth2Login(oauth2 -> oauth2
@@ -99,7 +113,7 @@ public class SecurityConfig {
             public OidcUser loadUser(OidcUserRequest userRequest) {
                 OidcUser oidcUser = delegate.loadUser(userRequest);
                 Map<String, Object> claims = oidcUser.getClaims();
-                System.out.println("OIDC Claims: " + claims);
+                logger.debug("OIDC claims: {}", claims);
 
                 Collection<SimpleGrantedAuthority> mappedAuthorities = new java.util.ArrayList<>();
 
@@ -117,18 +131,18 @@ public class SecurityConfig {
                                     String role = String.valueOf(roleObj);
                                     mappedAuthorities.add(new SimpleGrantedAuthority(role));
                                 }
-                                System.out.println("Mapped roles from realm_access: " + mappedAuthorities);
+                                logger.debug("Mapped roles from realm_access: {}", mappedAuthorities);
                             } else {
-                                System.out.println("roles is not an Iterable");
+                                logger.warn("roles in realm_access is not an Iterable");
                             }
                         } else {
-                            System.out.println("roles key not found in realm_access");
+                            logger.warn("roles key not found in realm_access");
                         }
                     } else {
-                        System.out.println("realm_access is not a Map");
+                        logger.warn("realm_access is not a Map");
                     }
                 } else {
-                    System.out.println("realm_access claim is not present");
+                    logger.warn("realm_access claim is not present");
                 }
 
                 // Return a new OidcUser with our mapped authorities (which may be empty if
@@ -1,20 +1,37 @@
 package com.example.workflow.controller;
 
-import com.example.workflow.components.nodes.WorkflowNode;
+import com.example.workflow.config.JsonMappers;
+import com.example.workflow.model.CompiledWorkflowDefinition;
 import com.example.workflow.model.WorkflowDefinition;
+import com.example.workflow.model.WorkflowDocument;
+import com.example.workflow.model.WorkflowDocumentEntity;
 import com.example.workflow.model.WorkflowExecutionEntity;
 import com.example.workflow.model.WorkflowJsonEntity;
+import com.example.workflow.model.WorkflowSummary;
 import com.example.workflow.repository.WorkflowExecutionRepository;
 import com.example.workflow.repository.WorkflowJsonRepository;
+import com.example.workflow.service.DocumentStorageService;
+import com.example.workflow.service.ExecutionConflictException;
+import com.example.workflow.service.ExecutionEventService;
+import com.example.workflow.service.WorkflowDefinitionCache;
 import com.example.workflow.service.WorkflowExecutionEngine;
 import com.example.workflow.service.WorkflowOPAService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,11 +54,22 @@ public class WorkflowController {
     @Autowired
     private WorkflowOPAService opaService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private WorkflowDefinitionCache definitionCache;
+
+    @Autowired
+    private DocumentStorageService documentStorageService;
+
+    @Autowired
+    private ExecutionEventService executionEventService;
+
+    @Autowired
+    private JsonMappers jsonMappers;
+
 
     @GetMapping
     public ResponseEntity<List<Map<String, Object>>> getAllWorkflows() {
-        List<WorkflowJsonEntity> workflows = workflowJsonRepository.findAll();
+        List<WorkflowSummary> workflows = workflowJsonRepository.findAllSummaries();
 
         List<Map<String, Object>> result = workflows.stream()
                 .map(w -> {
@@ -49,6 +77,9 @@ public class WorkflowController {
                     map.put("id", w.getId());
                     map.put("name", w.getName());
                     map.put("documentType", w.getDocumentType());
+                    map.put("nodeCount", w.getNodeCount());
+                    map.put("nodeTypes", splitList(w.getNodeTypes()));
+                    map.put("requiredRoles", splitList(w.getRequiredRoles()));
                     return map;
                 })
                 .collect(Collectors.toList());
@@ -56,6 +87,11 @@ public class WorkflowController {
         return ResponseEntity.ok(result);
     }
 
+    private static List<String> splitList(String value) {
+        return value == null || value.isEmpty() ? List.of()
+                : List.of(value.split(WorkflowJsonEntity.LIST_SEPARATOR, -1));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<WorkflowJsonEntity> getWorkflow(@PathVariable Long id) {
         Optional<WorkflowJsonEntity> workflow = workflowJsonRepository.findById(id);
@@ -67,18 +103,16 @@ public class WorkflowController {
     public ResponseEntity<WorkflowJsonEntity> createWorkflow(@RequestBody Map<String, Object> workflowData) {
         try {
             String name = (String) workflowData.get("name");
-            List<Map<String, Object>> nodes = (List<Map<String, Object>>) workflowData.get("nodes");
+            WorkflowDocument document = jsonMappers.mapper().convertValue(workflowData, WorkflowDocument.class);
 
             WorkflowJsonEntity entity = new WorkflowJsonEntity();
             entity.setName(name);
-            entity.setData(objectMapper.writeValueAsString(nodes));
+            entity.setData(document.toJson());
 
             entity = workflowJsonRepository.save(entity);
 
             // Generate and deploy OPA policy
-            WorkflowDefinition definition = new WorkflowDefinition(entity);
-            String policy = generateWorkflowPolicy(definition);
-            opaService.deployWorkflowPolicy(entity.getId(), policy);
+            opaService.deployWorkflowPolicy(definitionCache.getCompiled(entity));
 
             return ResponseEntity.ok(entity);
         } catch (Exception e) {
@@ -95,7 +129,7 @@ public class WorkflowController {
             }
 
             WorkflowJsonEntity workflowEntity = workflowOpt.get();
-            WorkflowDefinition definition = new WorkflowDefinition(workflowEntity);
+            WorkflowDefinition definition = definitionCache.getDefinition(workflowEntity);
 
             String username = getCurrentUsername();
             WorkflowExecutionEntity execution = executionEngine.startExecution(definition, username);
@@ -140,14 +174,15 @@ public class WorkflowController {
             result.put("createdBy", execution.getCreatedBy());
             result.put("createdAt", execution.getCreatedAt());
             result.put("updatedAt", execution.getUpdatedAt());
+            result.put("version", execution.getVersion());
 
             // Add workflow definition
-            WorkflowDefinition definition = new WorkflowDefinition(execution.getWorkflow());
+            CompiledWorkflowDefinition definition = definitionCache.getCompiled(execution.getWorkflow());
             result.put("workflowName", definition.getName());
-            result.put("workflowId", definition.getId());
+            result.put("workflowId", definition.getWorkflowId());
 
             // Add current node info
-            WorkflowNode currentNode = definition.getNodeAt(execution.getCurrentNodeIndex());
+            CompiledWorkflowDefinition.NodeSpec currentNode = definition.getNodeAt(execution.getCurrentNodeIndex());
             if (currentNode != null) {
                 Map<String, Object> nodeInfo = new HashMap<>();
                 nodeInfo.put("name", currentNode.getName());
@@ -155,7 +190,7 @@ public class WorkflowController {
                 result.put("currentNode", nodeInfo);
             }
 
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok().eTag(versionTag(execution)).body(result);
         } catch (Exception e) {
             Map<String, Object> error = new HashMap<>();
             error.put("error", e.getMessage());
@@ -163,9 +198,128 @@ public class WorkflowController {
         }
     }
 
+    /**
+     * Get the event log of an execution, oldest first
+     */
+    @GetMapping("/executions/{id}/events")
+    public ResponseEntity<List<Map<String, Object>>> getExecutionEvents(@PathVariable Long id) {
+        Optional<WorkflowExecutionEntity> executionOpt = executionRepository.findById(id);
+        if (!executionOpt.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        WorkflowExecutionEntity execution = executionOpt.get();
+
+        // Check permissions
+        String username = getCurrentUsername();
+        if (!execution.getCreatedBy().equals(username) && !checkRoleBasedAccess(execution)) {
+            return ResponseEntity.status(403).build();
+        }
+
+        List<Map<String, Object>> events = executionEventService.getHistory(id).stream()
+                .map(event -> {
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("sequence", event.getSequence());
+                    result.put("type", event.getEventType());
+                    result.put("nodeIndex", event.getNodeIndex());
+                    result.put("nodeName", event.getNodeName());
+                    result.put("actor", event.getActor());
+                    result.put("payload", readPayload(event.getPayload()));
+                    result.put("createdAt", event.getCreatedAt());
+                    return result;
+                })
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(events);
+    }
+
+    /**
+     * Stream the current document of an execution. Supports single byte ranges
+     * so PDF viewers can fetch only the pages they need, and ETag revalidation
+     * based on the content hash.
+     */
+    @GetMapping("/executions/{id}/document")
+    public void getExecutionDocument(@PathVariable Long id, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        Optional<WorkflowExecutionEntity> executionOpt = executionRepository.findById(id);
+        if (!executionOpt.isPresent()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        WorkflowExecutionEntity execution = executionOpt.get();
+
+        // Check permissions
+        String username = getCurrentUsername();
+        if (!execution.getCreatedBy().equals(username) && !checkRoleBasedAccess(execution)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        Optional<WorkflowDocumentEntity> documentOpt = documentStorageService.findDocument(execution.getDocumentId());
+        if (documentOpt.isEmpty() || documentOpt.get().getSha256() == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        WorkflowDocumentEntity document = documentOpt.get();
+        String etag = "\"" + document.getSha256() + "\"";
+
+        // The document of an execution can be replaced, so clients revalidate on every use
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // Opened up front, so evicting the cached file cannot pull it away mid-response
+        try (FileChannel channel = documentStorageService.openContent(document.getSha256())) {
+            long size = channel.size();
+            long start = 0;
+            long length = size;
+
+            String range = request.getHeader(HttpHeaders.RANGE);
+            String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+            if (range != null && (ifRange == null || ifRange.equals(etag))) {
+                long[] bounds = parseRange(range, size);
+                if (bounds == null) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if (bounds.length == 2) {
+                    start = bounds[0];
+                    length = bounds[1] - bounds[0] + 1;
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE,
+                            "bytes " + bounds[0] + "-" + bounds[1] + "/" + size);
+                }
+            }
+
+            response.setContentType(document.getMimeType() != null ? document.getMimeType() : "application/octet-stream");
+            response.setContentLengthLong(length);
+            if (document.getFileName() != null) {
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                        .filename(document.getFileName(), StandardCharsets.UTF_8).build().toString());
+            }
+
+            transfer(channel, response, start, length);
+        }
+    }
+
+    /**
+     * Advance an execution. Send the ETag of the execution as read in If-Match
+     * to only advance if nobody else has changed it since. A stale If-Match
+     * returns 412 Precondition Failed and losing a race with a concurrent
+     * advance returns 409 Conflict, both with the current state and its ETag,
+     * so the client can decide again and retry.
+     */
     @PostMapping("/executions/{id}/advance")
     public ResponseEntity<Map<String, Object>> advanceExecution(
             @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody Map<String, Object> actionData) {
 
         Optional<WorkflowExecutionEntity> executionOpt = executionRepository.findById(id);
@@ -185,6 +339,10 @@ public class WorkflowController {
             }
         }
 
+        if (ifMatch != null && !etagMatches(ifMatch, versionTag(execution))) {
+            return modified(HttpStatus.PRECONDITION_FAILED, execution);
+        }
+
         try {
             // Create execution context
             Map<String, Object> context = executionEngine.createExecutionContext(execution);
@@ -201,12 +359,9 @@ public class WorkflowController {
             // Reload execution to get updated state
             execution = executionRepository.findById(id).orElseThrow();
 
-            Map<String, Object> result = new HashMap<>();
-            result.put("id", execution.getId());
-            result.put("status", execution.getStatus());
-            result.put("currentNodeIndex", execution.getCurrentNodeIndex());
-
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok().eTag(versionTag(execution)).body(executionState(execution));
+        } catch (ExecutionConflictException e) {
+            return modified(HttpStatus.CONFLICT, executionRepository.findById(id).orElseThrow());
         } catch (Exception e) {
             Map<String, Object> error = new HashMap<>();
             error.put("error", e.getMessage());
@@ -214,6 +369,121 @@ public class WorkflowController {
         }
     }
 
+    private Object readPayload(String payload) {
+        try {
+            return payload != null ? jsonMappers.treeReader().readTree(payload) : null;
+        } catch (Exception e) {
+            return payload;
+        }
+    }
+
+    private Map<String, Object> executionState(WorkflowExecutionEntity execution) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("id", execution.getId());
+        result.put("status", execution.getStatus());
+        result.put("currentNodeIndex", execution.getCurrentNodeIndex());
+        result.put("version", execution.getVersion());
+        return result;
+    }
+
+    private ResponseEntity<Map<String, Object>> modified(HttpStatus status, WorkflowExecutionEntity current) {
+        Map<String, Object> result = executionState(current);
+        result.put("error", "The execution was modified by another user");
+        return ResponseEntity.status(status).eTag(versionTag(current)).body(result);
+    }
+
+    /**
+     * ETag of the state of an execution, derived from its optimistic lock version
+     */
+    private String versionTag(WorkflowExecutionEntity execution) {
+        return "\"" + execution.getVersion() + "\"";
+    }
+
+    /**
+     * Check an If-None-Match or If-Match header against the ETag of a resource
+     */
+    private boolean etagMatches(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a Range header for a resource of the given size.
+     *
+     * @return The inclusive first and last byte position, an empty array if the
+     *         header should be ignored (unsupported unit or multiple ranges), or
+     *         null if the range cannot be satisfied
+     */
+    private long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || range.contains(",")) {
+            return new long[0];
+        }
+
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffixLength = Long.parseLong(last);
+                if (suffixLength <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffixLength);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            }
+
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * Send part of an open file as the response body with a FileChannel
+     * transfer into the response stream. Tomcat's sendfile is not used, as it
+     * reopens the file by name after the request returns, when the cache may
+     * already have evicted it.
+     */
+    private void transfer(FileChannel channel, HttpServletResponse response, long start, long length)
+            throws IOException {
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        long position = start;
+        long remaining = length;
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, remaining, out);
+            if (transferred <= 0) {
+                break;
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
     private String getCurrentUsername() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.isAuthenticated()) {
@@ -224,17 +494,13 @@ public class WorkflowController {
 
     private boolean checkRoleBasedAccess(WorkflowExecutionEntity execution) {
         try {
-            WorkflowDefinition definition = new WorkflowDefinition(execution.getWorkflow());
-            int currentNodeIndex = execution.getCurrentNodeIndex();
-            WorkflowNode currentNode = definition.getNodeAt(currentNodeIndex);
+            // Required role of the current node, maintained by the engine on every advance
+            String requiredRole = execution.getRequiredRole();
 
-            if (currentNode == null) {
+            if (requiredRole == null) {
                 return false;
             }
 
-            String nodeType = currentNode.getType();
-            Map<String, String> properties = currentNode.getProperties();
-
             // Get user roles
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             List<String> userRoles = authentication.getAuthorities().stream()
@@ -242,55 +508,9 @@ public class WorkflowController {
                     .collect(Collectors.toList());
 
             // Check role-based access
-            if ("Document Review".equals(nodeType)) {
-                String reviewerRole = properties.getOrDefault("reviewerRole", "");
-                return userRoles.contains(reviewerRole);
-            } else if ("Approve/Reject".equals(nodeType)) {
-                String approverRole = properties.getOrDefault("Approver Role", "");
-                return userRoles.contains(approverRole);
-            }
-
-            return false;
+            return userRoles.contains(requiredRole);
         } catch (Exception e) {
             return false;
         }
     }
-
-    private String generateWorkflowPolicy(WorkflowDefinition definition) {
-        StringBuilder policy = new StringBuilder();
-        policy.append("package workflow_").append(definition.getId()).append("\n\n");
-        policy.append("default allow = false\n\n");
-
-        // Iterate over each node to generate appropriate policies
-        for (WorkflowNode node : definition.getNodes()) {
-            switch (node.getType()) {
-                case "Document Review":
-                    // Use reviewer role from the node properties
-                    String reviewerRole = node.getProperties().getOrDefault("reviewerRole", "manager");
-                    policy.append("allow if{\n")
-                            .append("    input.action == \"review\"\n")
-                            .append("    input.role == \"").append(reviewerRole).append("\"\n")
-                            .append("}\n\n");
-                    break;
-                case "Approve/Reject":
-                    // Use approver role from the node properties
-                    String approverRole = node.getProperties().getOrDefault("Approver Role", "senior_manager");
-                    policy.append("allow if{\n")
-                            .append("    input.action == \"approve\"\n")
-                            .append("    input.role == \"").append(approverRole).append("\"\n")
-                            .append("}\n\n");
-                    break;
-                default:
-                    // Handle additional node types here
-                    break;
-            }
-        }
-
-        // Add a general "allow" for uploads at the workflow level
-        policy.append("allow if{\n")
-                .append("    input.action == \"upload\"\n")
-                .append("}\n\n");
-
-        return policy.toString();
-    }
 }
@@ -0,0 +1,245 @@
+package com.example.workflow.model;
+
+import com.example.workflow.components.nodes.WorkflowNode;
+import com.example.workflow.components.nodes.WorkflowNodeFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, pre-parsed form of a stored workflow definition.
+ *
+ * Holds the node specifications together with lookup tables (node types,
+ * required roles, upload node index) so that callers on the request path
+ * never have to touch the workflow JSON. Instances are shared between
+ * sessions through {@link com.example.workflow.service.WorkflowDefinitionCache},
+ * so nothing in here may be mutated after construction.
+ */
+public final class CompiledWorkflowDefinition {
+
+    private final Long workflowId;
+    private final long contentVersion;
+    private final String name;
+    private final NodeSpec[] nodes;
+    private final String[] nodeTypes;
+    private final String[] requiredRoles;
+    private final int uploadNodeIndex;
+
+    private CompiledWorkflowDefinition(Long workflowId, long contentVersion, String name, NodeSpec[] nodes) {
+        this.workflowId = workflowId;
+        this.contentVersion = contentVersion;
+        this.name = name;
+        this.nodes = nodes;
+        this.nodeTypes = new String[nodes.length];
+        this.requiredRoles = new String[nodes.length];
+
+        int uploadIndex = -1;
+        for (int i = 0; i < nodes.length; i++) {
+            nodeTypes[i] = nodes[i].getType();
+            requiredRoles[i] = requiredRoleFor(nodes[i].getType(), nodes[i].getProperties());
+            if (uploadIndex < 0 && "Upload".equals(nodes[i].getType())) {
+                uploadIndex = i;
+            }
+        }
+        this.uploadNodeIndex = uploadIndex;
+    }
+
+    /**
+     * Parse the JSON of a workflow entity into a compiled definition.
+     * Accepts both the {"nodes": [...]} document written by the designer and
+     * a bare node array.
+     *
+     * @param entity The workflow JSON entity
+     * @return The compiled definition
+     * @throws RuntimeException if the workflow data cannot be parsed
+     */
+    public static CompiledWorkflowDefinition compile(WorkflowJsonEntity entity) {
+        try {
+            List<NodeSpec> specs = new ArrayList<>();
+            for (WorkflowNodeData nodeData : WorkflowDocument.parse(entity.getData()).getNodes()) {
+                specs.add(NodeSpec.fromNode(nodeData));
+            }
+            return new CompiledWorkflowDefinition(entity.getId(), contentVersionOf(entity), entity.getName(),
+                    specs.toArray(new NodeSpec[0]));
+        } catch (Exception e) {
+            throw new RuntimeException("Error parsing workflow definition", e);
+        }
+    }
+
+    /**
+     * Content version of a workflow entity: the first 64 bits of the SHA-256
+     * digest of its JSON, so an edit to the stored data yields a different
+     * version barring a cryptographic collision. The digest is memoized on the
+     * entity until its data is set again.
+     */
+    public static long contentVersionOf(WorkflowJsonEntity entity) {
+        Long version = entity.getContentVersion();
+        if (version == null) {
+            version = digest(entity.getData());
+            entity.setContentVersion(version);
+        }
+        return version;
+    }
+
+    private static long digest(String data) {
+        if (data == null) {
+            return 0L;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Resolve the role required to act on a node of the given type
+     *
+     * @return The required role, or null if the node type is not role-gated
+     */
+    public static String requiredRoleFor(String nodeType, Map<String, String> properties) {
+        if (properties == null) {
+            return null;
+        }
+        if ("Document Review".equals(nodeType) || "Doc Review".equals(nodeType)) {
+            return emptyToNull(properties.get("reviewerRole"));
+        } else if ("Approve/Reject".equals(nodeType) || "Approval".equals(nodeType)) {
+            return emptyToNull(properties.get("Approver Role"));
+        }
+        return null;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Create fresh node instances for this definition. Nodes carry per-session
+     * UI state, so they are never shared between callers.
+     */
+    public List<WorkflowNode> instantiateNodes() {
+        List<WorkflowNode> result = new ArrayList<>(nodes.length);
+        for (NodeSpec spec : nodes) {
+            result.add(spec.instantiate());
+        }
+        return result;
+    }
+
+    public Long getWorkflowId() {
+        return workflowId;
+    }
+
+    public long getContentVersion() {
+        return contentVersion;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Get the node specification at a specific index
+     *
+     * @return The node spec, or null if the index is out of bounds
+     */
+    public NodeSpec getNodeAt(int index) {
+        if (index < 0 || index >= nodes.length) {
+            return null;
+        }
+        return nodes[index];
+    }
+
+    /**
+     * Get the node type at a specific index, or null if out of bounds
+     */
+    public String getNodeType(int index) {
+        if (index < 0 || index >= nodeTypes.length) {
+            return null;
+        }
+        return nodeTypes[index];
+    }
+
+    /**
+     * Get the role required to act on the node at a specific index
+     *
+     * @return The required role, or null if out of bounds or not role-gated
+     */
+    public String getRequiredRole(int index) {
+        if (index < 0 || index >= requiredRoles.length) {
+            return null;
+        }
+        return requiredRoles[index];
+    }
+
+    /**
+     * Get the index of the first upload node, or -1 if there is none
+     */
+    public int getUploadNodeIndex() {
+        return uploadNodeIndex;
+    }
+
+    /**
+     * Immutable specification of a single workflow node
+     */
+    public static final class NodeSpec {
+
+        private final String type;
+        private final String name;
+        private final String description;
+        private final Map<String, String> properties;
+
+        NodeSpec(String type, String name, String description, Map<String, String> properties) {
+            this.type = type;
+            this.name = name;
+            this.description = description;
+            this.properties = Collections.unmodifiableMap(properties);
+        }
+
+        static NodeSpec fromNode(WorkflowNodeData nodeData) {
+            Map<String, String> props = new LinkedHashMap<>();
+            if (nodeData.getProps() != null) {
+                props.putAll(nodeData.getProps());
+            }
+            return new NodeSpec(nodeData.getType(), nodeData.getName(), nodeData.getDescription(), props);
+        }
+
+        WorkflowNode instantiate() {
+            Map<String, Object> nodeData = new HashMap<>();
+            nodeData.put("type", type);
+            nodeData.put("name", name);
+            nodeData.put("description", description);
+            // Each node gets its own mutable copy of the properties
+            nodeData.put("props", new HashMap<>(properties));
+            return WorkflowNodeFactory.fromMap(nodeData);
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.workflow.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Marker of a one-off data migration that has completed, so it is not run
+ * again on later startups
+ */
+@Entity
+@Table(name = "data_migrations")
+public class DataMigrationEntity {
+
+    @Id
+    @Column(name = "name", length = 100)
+    private String name;
+
+    @Column(name = "applied_at")
+    private LocalDateTime appliedAt;
+
+    // Getters and setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public LocalDateTime getAppliedAt() {
+        return appliedAt;
+    }
+
+    public void setAppliedAt(LocalDateTime appliedAt) {
+        this.appliedAt = appliedAt;
+    }
+}
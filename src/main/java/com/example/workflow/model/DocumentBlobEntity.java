@@ -0,0 +1,73 @@
+package com.example.workflow.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Content of uploaded documents, stored once per distinct SHA-256 hash.
+ *
+ * Every {@link WorkflowDocumentEntity} with the same hash shares one blob, and
+ * ref_count tracks how many of them do. The blob is removed when the last
+ * document referencing it is deleted.
+ */
+@Entity
+@Table(name = "document_blobs")
+public class DocumentBlobEntity {
+
+    @Id
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+
+    @Column(name = "content", columnDefinition = "bytea")
+    private byte[] content;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    // Getters and setters
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(long refCount) {
+        this.refCount = refCount;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public void setContent(byte[] content) {
+        this.content = content;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
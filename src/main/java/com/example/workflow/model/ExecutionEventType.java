@@ -0,0 +1,14 @@
+package com.example.workflow.model;
+
+/**
+ * Types of entries in the execution event log
+ */
+public enum ExecutionEventType {
+    STARTED,
+    UPLOADED,
+    REVIEWED,
+    RETURNED,
+    APPROVED,
+    REJECTED,
+    NODE_COMPLETED
+}
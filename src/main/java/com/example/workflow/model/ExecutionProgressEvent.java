@@ -0,0 +1,19 @@
+package com.example.workflow.model;
+
+import java.util.List;
+
+/**
+ * Progress of a workflow execution after a committed step, as published to
+ * the views showing the execution
+ *
+ * @param executionId      The execution that changed
+ * @param sequence         The event log sequence of the step, increasing per execution
+ * @param eventType        The kind of step
+ * @param currentNodeIndex The current node after the step
+ * @param status           The execution status after the step
+ * @param nodeStatuses     The status of every node after the step, by node index
+ * @param actor            The user who made the step
+ */
+public record ExecutionProgressEvent(Long executionId, int sequence, ExecutionEventType eventType,
+        int currentNodeIndex, String status, List<NodeStatus> nodeStatuses, String actor) {
+}
@@ -0,0 +1,38 @@
+package com.example.workflow.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * CSS position of a node on the designer canvas, e.g. "120px"
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class NodePosition {
+
+    private String left;
+
+    private String top;
+
+    public NodePosition() {
+    }
+
+    public NodePosition(String left, String top) {
+        this.left = left;
+        this.top = top;
+    }
+
+    public String getLeft() {
+        return left;
+    }
+
+    public void setLeft(String left) {
+        this.left = left;
+    }
+
+    public String getTop() {
+        return top;
+    }
+
+    public void setTop(String top) {
+        this.top = top;
+    }
+}
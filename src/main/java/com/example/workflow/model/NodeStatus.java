@@ -0,0 +1,96 @@
+package com.example.workflow.model;
+
+/**
+ * Status of a single node of a workflow execution.
+ *
+ * Statuses are stored as one code character per node position in the
+ * node_status_codes column of workflow_executions, see {@link #encode} and
+ * {@link #decode}. The label is the text shown in the UI and used by the
+ * legacy JSON node status map.
+ */
+public enum NodeStatus {
+    PENDING('P', "Pending"),
+    IN_PROGRESS('I', "In Progress"),
+    COMPLETED('C', "Completed"),
+    RETURNED('R', "Returned"),
+    REJECTED('X', "Rejected"),
+    SKIPPED('S', "Skipped");
+
+    private static final NodeStatus[] VALUES = values();
+
+    private final char code;
+    private final String label;
+
+    NodeStatus(char code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    public char getCode() {
+        return code;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Check whether the node has been finished, successfully or not
+     */
+    public boolean isDone() {
+        return this == COMPLETED || this == SKIPPED;
+    }
+
+    /**
+     * Get the status with the given code
+     *
+     * @return The status, or {@link #PENDING} for an unknown code
+     */
+    public static NodeStatus fromCode(char code) {
+        for (NodeStatus status : VALUES) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        return PENDING;
+    }
+
+    /**
+     * Get the status with the given label
+     *
+     * @param label    The label, e.g. "In Progress"
+     * @param fallback The status to return for a missing or unknown label
+     */
+    public static NodeStatus fromLabel(String label, NodeStatus fallback) {
+        if (label != null) {
+            for (NodeStatus status : VALUES) {
+                if (status.label.equals(label)) {
+                    return status;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Encode statuses by node position as a string of status codes
+     */
+    public static String encode(NodeStatus[] statuses) {
+        char[] codes = new char[statuses.length];
+        for (int i = 0; i < statuses.length; i++) {
+            codes[i] = (statuses[i] != null ? statuses[i] : PENDING).code;
+        }
+        return new String(codes);
+    }
+
+    /**
+     * Decode a string of status codes into statuses by node position
+     */
+    public static NodeStatus[] decode(String codes) {
+        NodeStatus[] statuses = new NodeStatus[codes.length()];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = fromCode(codes.charAt(i));
+        }
+        return statuses;
+    }
+}
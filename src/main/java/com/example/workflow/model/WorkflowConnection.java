@@ -0,0 +1,54 @@
+package com.example.workflow.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Objects;
+
+/**
+ * A connection between two nodes on the designer canvas, by node id
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class WorkflowConnection {
+
+    private String source;
+
+    private String target;
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WorkflowConnection)) {
+            return false;
+        }
+        WorkflowConnection other = (WorkflowConnection) o;
+        return Objects.equals(source, other.source) && Objects.equals(target, other.target);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, target);
+    }
+
+    @Override
+    public String toString() {
+        return source + " -> " + target;
+    }
+}
@@ -1,9 +1,7 @@
 package com.example.workflow.model;
 
 import com.example.workflow.components.nodes.WorkflowNode;
-import com.example.workflow.components.nodes.WorkflowNodeFactory;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.workflow.config.JsonMappers;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +16,7 @@ public class WorkflowDefinition {
     private String name;
     private List<WorkflowNode> nodes = new ArrayList<>();
     private WorkflowJsonEntity entity;
+    private CompiledWorkflowDefinition compiled;
 
     /**
      * Create an empty workflow definition
@@ -32,30 +31,22 @@ public class WorkflowDefinition {
      * @throws RuntimeException if there's an error parsing the workflow data
      */
     public WorkflowDefinition(WorkflowJsonEntity entity) {
+        this(entity, CompiledWorkflowDefinition.compile(entity));
+    }
+
+    /**
+     * Create a workflow definition from an already compiled definition.
+     * Only fresh node instances are created; no JSON is parsed.
+     * 
+     * @param entity   The workflow JSON entity
+     * @param compiled The compiled form of the entity's data
+     */
+    public WorkflowDefinition(WorkflowJsonEntity entity, CompiledWorkflowDefinition compiled) {
         this.entity = entity;
         this.id = entity.getId();
         this.name = entity.getName();
-
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            Map<String, Object> workflowData = mapper.readValue(
-                    entity.getData(),
-                    new TypeReference<Map<String, Object>>() {
-                    });
-
-            List<Map<String, Object>> nodesData = (List<Map<String, Object>>) workflowData.get("nodes");
-
-            for (Map<String, Object> nodeData : nodesData) {
-                WorkflowNode node = WorkflowNodeFactory.fromMap(nodeData);
-                nodes.add(node);
-            }
-
-            // Handle connections if needed
-
-        } catch (Exception e) {
-            throw new RuntimeException("Error parsing workflow definition", e);
-        }
-
+        this.compiled = compiled;
+        this.nodes = compiled.instantiateNodes();
     }
 
     /**
@@ -135,6 +126,14 @@ public class WorkflowDefinition {
         return entity;
     }
 
+    /**
+     * Get the compiled definition backing this workflow, or null if the
+     * definition was assembled by hand
+     */
+    public CompiledWorkflowDefinition getCompiled() {
+        return compiled;
+    }
+
     /**
      * Set the original entity
      */
@@ -150,7 +149,6 @@ public class WorkflowDefinition {
      */
     public String toJson() {
         try {
-            ObjectMapper mapper = new ObjectMapper();
             List<Map<String, Object>> nodesData = new ArrayList<>();
 
             for (int i = 0; i < nodes.size(); i++) {
@@ -164,7 +162,7 @@ public class WorkflowDefinition {
                 nodesData.add(nodeMap);
             }
 
-            return mapper.writeValueAsString(nodesData);
+            return JsonMappers.shared().writer().writeValueAsString(nodesData);
         } catch (Exception e) {
             throw new RuntimeException("Error serializing workflow definition", e);
         }
@@ -0,0 +1,93 @@
+package com.example.workflow.model;
+
+import com.example.workflow.config.JsonMappers;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed form of the workflow JSON stored in workflow_json.data.
+ *
+ * Two shapes exist in stored data: the {"nodes": [...], "connections": [...]}
+ * document written by the designer, and a bare node array written by older
+ * code paths. {@link WorkflowDocumentDeserializer} reads both; this class
+ * always writes the document shape.
+ */
+@JsonDeserialize(using = WorkflowDocumentDeserializer.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WorkflowDocument {
+
+    private List<WorkflowNodeData> nodes = new ArrayList<>();
+
+    private List<WorkflowConnection> connections = new ArrayList<>();
+
+    public WorkflowDocument() {
+    }
+
+    public WorkflowDocument(List<WorkflowNodeData> nodes, List<WorkflowConnection> connections) {
+        this.nodes = nodes;
+        this.connections = connections;
+    }
+
+    /**
+     * Parse stored workflow JSON in either shape
+     *
+     * @param json The JSON, may be null or blank for an empty workflow
+     * @return The document
+     * @throws IllegalArgumentException if the JSON is not a workflow in a known shape
+     */
+    public static WorkflowDocument parse(String json) {
+        if (json == null || json.isBlank()) {
+            return new WorkflowDocument();
+        }
+        try {
+            return JsonMappers.shared().workflowDocumentReader().readValue(json);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid workflow JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Serialize in the normalized document shape
+     */
+    public String toJson() {
+        try {
+            return JsonMappers.shared().writer().writeValueAsString(this);
+        } catch (Exception e) {
+            throw new RuntimeException("Error serializing workflow", e);
+        }
+    }
+
+    /**
+     * Get the document type configured on the first upload node
+     *
+     * @return The document type, or null if no upload node sets one
+     */
+    public String findDocumentType() {
+        for (WorkflowNodeData node : nodes) {
+            if ("Upload".equals(node.getType()) && node.getProps() != null
+                    && node.getProps().containsKey("documentType")) {
+                return node.getProps().get("documentType");
+            }
+        }
+        return null;
+    }
+
+    public List<WorkflowNodeData> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<WorkflowNodeData> nodes) {
+        this.nodes = nodes;
+    }
+
+    public List<WorkflowConnection> getConnections() {
+        return connections;
+    }
+
+    public void setConnections(List<WorkflowConnection> connections) {
+        this.connections = connections;
+    }
+}
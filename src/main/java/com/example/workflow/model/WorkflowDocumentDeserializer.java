@@ -0,0 +1,59 @@
+package com.example.workflow.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams a {@link WorkflowDocument} from either stored shape: the
+ * {"nodes": [...], "connections": [...]} document or a bare node array.
+ * Nodes and connections are bound directly to their types without building an
+ * intermediate tree; unknown top-level fields are skipped.
+ */
+public class WorkflowDocumentDeserializer extends JsonDeserializer<WorkflowDocument> {
+
+    @Override
+    public WorkflowDocument deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        WorkflowDocument document = new WorkflowDocument();
+        JsonToken token = parser.currentToken();
+
+        if (token == JsonToken.START_ARRAY) {
+            // Legacy shape: a bare node array
+            document.setNodes(readList(parser, context, WorkflowNodeData.class));
+            return document;
+        }
+
+        if (token != JsonToken.START_OBJECT) {
+            return (WorkflowDocument) context.handleUnexpectedToken(WorkflowDocument.class, parser);
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("nodes".equals(field) && value == JsonToken.START_ARRAY) {
+                document.setNodes(readList(parser, context, WorkflowNodeData.class));
+            } else if ("connections".equals(field) && value == JsonToken.START_ARRAY) {
+                document.setConnections(readList(parser, context, WorkflowConnection.class));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return document;
+    }
+
+    private <T> List<T> readList(JsonParser parser, DeserializationContext context, Class<T> type)
+            throws IOException {
+        List<T> items = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.VALUE_NULL) {
+                items.add(context.readValue(parser, type));
+            }
+        }
+        return items;
+    }
+}
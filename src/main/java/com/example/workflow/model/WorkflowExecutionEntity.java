@@ -1,15 +1,19 @@
 package com.example.workflow.model;
 
+import com.example.workflow.config.JsonMappers;
 import com.example.workflow.entity.OrganizationEntity;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
 @Entity
-@Table(name = "workflow_executions")
+@DynamicUpdate
+@Table(name = "workflow_executions", indexes = {
+        @Index(name = "idx_workflow_executions_org_creator", columnList = "organization_id, created_by, updated_at"),
+        @Index(name = "idx_workflow_executions_org_role", columnList = "organization_id, required_role, updated_at")
+})
 public class WorkflowExecutionEntity {
 
     @Id
@@ -24,16 +28,39 @@ public class WorkflowExecutionEntity {
 
     private String status;
 
-    @Column(name = "uploaded_document", columnDefinition = "bytea")
-    private byte[] uploadedDocument;
+    /**
+     * Id of the current document in workflow_documents; the content itself is
+     * never loaded with the execution
+     */
+    @Column(name = "document_id")
+    private Long documentId;
 
     private String uploadedFileName;
 
     private String mimeType;
 
+    /**
+     * Legacy JSON map from node name to status label, only read for rows
+     * written before node_status_codes existed
+     */
     @Column(name = "node_statuses", columnDefinition = "text")
     private String nodeStatuses;
 
+    /** One {@link NodeStatus} code per node position */
+    @Column(name = "node_status_codes", columnDefinition = "text")
+    private String nodeStatusCodes;
+
+    /** Decoded node_status_codes, or the decoded legacy map for older rows */
+    @Transient
+    private NodeStatus[] decodedNodeStatuses;
+
+    @Transient
+    private Map<String, String> legacyNodeStatuses;
+
+    /** Decoded workflow_data, copied out to callers */
+    @Transient
+    private Map<String, Object> decodedWorkflowData;
+
     @Column(name = "workflow_data", columnDefinition = "text")
     private String workflowData;
 
@@ -47,6 +74,7 @@ public class WorkflowExecutionEntity {
     @Column(columnDefinition = "text")
     private String approvalNotes;
 
+    @Column(name = "created_by")
     private String createdBy;
 
     @Column(name = "created_at")
@@ -55,6 +83,21 @@ public class WorkflowExecutionEntity {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    /**
+     * Optimistic lock version, incremented on every update so concurrent
+     * advances of the same execution cannot overwrite each other
+     */
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    /**
+     * Sequence number of the last event in workflow_execution_events that this
+     * row reflects; the row is the snapshot of the event log up to here
+     */
+    @Column(name = "event_sequence", nullable = false, columnDefinition = "integer default 0")
+    private int eventSequence;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "organization_id")
     private OrganizationEntity organization;
@@ -88,6 +131,22 @@ public class WorkflowExecutionEntity {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public int getEventSequence() {
+        return eventSequence;
+    }
+
+    /**
+     * Reserve the sequence number of the next event appended for this
+     * execution. The row has to be saved in the same transaction as the event.
+     */
+    public int nextEventSequence() {
+        return ++eventSequence;
+    }
+
     public WorkflowJsonEntity getWorkflow() {
         return workflow;
     }
@@ -112,12 +171,12 @@ public class WorkflowExecutionEntity {
         this.status = status;
     }
 
-    public byte[] getUploadedDocument() {
-        return uploadedDocument;
+    public Long getDocumentId() {
+        return documentId;
     }
 
-    public void setUploadedDocument(byte[] uploadedDocument) {
-        this.uploadedDocument = uploadedDocument;
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
     }
 
     public String getUploadedFileName() {
@@ -136,12 +195,8 @@ public class WorkflowExecutionEntity {
         this.mimeType = mimeType;
     }
 
-    public String getNodeStatuses() {
-        return nodeStatuses;
-    }
-
-    public void setNodeStatuses(String nodeStatuses) {
-        this.nodeStatuses = nodeStatuses;
+    public String getNodeStatusCodes() {
+        return nodeStatusCodes;
     }
 
     public String getWorkflowData() {
@@ -150,6 +205,7 @@ public class WorkflowExecutionEntity {
 
     public void setWorkflowData(String workflowData) {
         this.workflowData = workflowData;
+        this.decodedWorkflowData = null;
     }
 
     public String getReviewDecision() {
@@ -208,39 +264,79 @@ public class WorkflowExecutionEntity {
         this.updatedAt = updatedAt;
     }
 
-    // Helper methods for working with JSON data
+    // Helper methods for working with node statuses and JSON data
+
+    /**
+     * Get the status of the node at a position. Rows written before statuses
+     * were stored by position are looked up by node name in the legacy map.
+     * Decoding happens once per entity instance.
+     */
+    public NodeStatus getNodeStatus(int position, String nodeName) {
+        if (nodeStatusCodes != null) {
+            if (decodedNodeStatuses == null) {
+                decodedNodeStatuses = NodeStatus.decode(nodeStatusCodes);
+            }
+            return position < decodedNodeStatuses.length ? decodedNodeStatuses[position] : NodeStatus.PENDING;
+        }
+        if (legacyNodeStatuses == null) {
+            legacyNodeStatuses = readLegacyNodeStatuses();
+        }
+        return NodeStatus.fromLabel(legacyNodeStatuses.get(nodeName), NodeStatus.PENDING);
+    }
+
+    /**
+     * Get the statuses of all nodes of a workflow by position, as a new array
+     */
+    public NodeStatus[] getNodeStatusArray(CompiledWorkflowDefinition definition) {
+        NodeStatus[] statuses = new NodeStatus[definition.getNodeCount()];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = getNodeStatus(i, definition.getNodeAt(i).getName());
+        }
+        return statuses;
+    }
 
     /**
-     * Get node statuses as a map
+     * Store the statuses of all nodes by position. Clears the legacy map.
      */
-    public Map<String, String> getNodeStatusesAsMap() {
+    public void setNodeStatusArray(NodeStatus[] statuses) {
+        this.nodeStatusCodes = NodeStatus.encode(statuses);
+        this.decodedNodeStatuses = statuses.clone();
+        this.nodeStatuses = null;
+        this.legacyNodeStatuses = null;
+    }
+
+    private Map<String, String> readLegacyNodeStatuses() {
         if (nodeStatuses == null || nodeStatuses.isEmpty()) {
-            return new HashMap<>();
+            return Map.of();
         }
 
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            return mapper.readValue(nodeStatuses, new TypeReference<Map<String, String>>() {
-            });
+            return JsonMappers.shared().statusMapReader().readValue(nodeStatuses);
         } catch (Exception e) {
-            return new HashMap<>();
+            return Map.of();
         }
     }
 
     /**
-     * Get workflow data as a map
+     * Get workflow data as a map. The JSON is parsed once per entity
+     * instance; every call returns a new mutable copy.
      */
     public Map<String, Object> getWorkflowDataAsMap() {
+        if (decodedWorkflowData == null) {
+            decodedWorkflowData = readWorkflowData();
+        }
+        return new HashMap<>(decodedWorkflowData);
+    }
+
+    private Map<String, Object> readWorkflowData() {
         if (workflowData == null || workflowData.isEmpty()) {
-            return new HashMap<>();
+            return Map.of();
         }
 
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            return mapper.readValue(workflowData, new TypeReference<Map<String, Object>>() {
-            });
+            return JsonMappers.shared().dataMapReader().readValue(workflowData);
         } catch (Exception e) {
-            return new HashMap<>();
+            return Map.of();
         }
     }
 
@@ -254,7 +350,10 @@ public class WorkflowExecutionEntity {
         this.documentType = documentType;
     }
 
+    @Column(name = "current_node_type")
     private String currentNodeType;
+
+    @Column(name = "required_role")
     private String requiredRole;
 
     public String getCurrentNodeType() {
@@ -272,4 +371,14 @@ public class WorkflowExecutionEntity {
     public void setRequiredRole(String requiredRole) {
         this.requiredRole = requiredRole;
     }
+
+    /**
+     * Refresh the denormalized current node type and required role from the
+     * workflow definition. Both are cleared once the execution has moved past
+     * the last node, which also removes it from reviewers' visibility queries.
+     */
+    public void updateCurrentNodeColumns(CompiledWorkflowDefinition definition) {
+        this.currentNodeType = definition.getNodeType(currentNodeIndex);
+        this.requiredRole = definition.getRequiredRole(currentNodeIndex);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.example.workflow.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the append-only event log of a workflow execution.
+ *
+ * Events are never updated. Each records what happened at a node, who did it,
+ * and the state change it caused as a small JSON delta, so the history of
+ * decisions survives later steps overwriting the execution row, and the row
+ * can be rebuilt by replaying the log.
+ */
+@Entity
+@Table(name = "workflow_execution_events", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_workflow_execution_events_sequence", columnNames = { "execution_id",
+                "sequence" })
+})
+public class WorkflowExecutionEventEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "execution_id", nullable = false)
+    private Long executionId;
+
+    /** Position of the event in the log of its execution, starting at 1 */
+    @Column(name = "sequence", nullable = false)
+    private int sequence;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 32)
+    private ExecutionEventType eventType;
+
+    @Column(name = "node_index")
+    private Integer nodeIndex;
+
+    @Column(name = "node_name")
+    private String nodeName;
+
+    @Column(name = "actor")
+    private String actor;
+
+    /** JSON state delta, see {@link com.example.workflow.service.ExecutionEventService} */
+    @Column(name = "payload", columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void prePersist() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public Long getExecutionId() {
+        return executionId;
+    }
+
+    public void setExecutionId(Long executionId) {
+        this.executionId = executionId;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(int sequence) {
+        this.sequence = sequence;
+    }
+
+    public ExecutionEventType getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(ExecutionEventType eventType) {
+        this.eventType = eventType;
+    }
+
+    public Integer getNodeIndex() {
+        return nodeIndex;
+    }
+
+    public void setNodeIndex(Integer nodeIndex) {
+        this.nodeIndex = nodeIndex;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public void setNodeName(String nodeName) {
+        this.nodeName = nodeName;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public void setActor(String actor) {
+        this.actor = actor;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
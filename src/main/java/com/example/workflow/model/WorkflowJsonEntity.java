@@ -4,10 +4,25 @@ import com.example.workflow.entity.OrganizationEntity;
 
 import jakarta.persistence.*;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 @Entity
-@Table(name = "workflow_json")
+@Table(name = "workflow_json", indexes = {
+        @Index(name = "idx_workflow_json_org_document_type", columnList = "organization_id, document_type")
+})
 public class WorkflowJsonEntity {
 
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowJsonEntity.class);
+
+    /** Separator of the node type and required role lists */
+    public static final String LIST_SEPARATOR = ",";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -17,6 +32,29 @@ public class WorkflowJsonEntity {
     @Column(name = "data", columnDefinition = "text")
     private String data; // entire workflow in JSON
 
+    /** Document type of the first upload node, extracted from the data */
+    @Column(name = "document_type")
+    private String documentType;
+
+    /** Number of nodes, extracted from the data; null until extracted */
+    @Column(name = "node_count")
+    private Integer nodeCount;
+
+    /** Node types in workflow order, separated by {@link #LIST_SEPARATOR} */
+    @Column(name = "node_types", columnDefinition = "text")
+    private String nodeTypes;
+
+    /** Distinct roles required by review and approval nodes, separated by {@link #LIST_SEPARATOR} */
+    @Column(name = "required_roles", columnDefinition = "text")
+    private String requiredRoles;
+
+    /**
+     * Memoized {@link CompiledWorkflowDefinition#contentVersionOf} of the
+     * data; cleared whenever the data is set
+     */
+    @Transient
+    private transient Long contentVersion;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "organization_id")
     private OrganizationEntity organization;
@@ -50,40 +88,66 @@ public class WorkflowJsonEntity {
         return data;
     }
 
+    /**
+     * Set the workflow JSON and extract the metadata columns from it
+     */
     public void setData(String data) {
         this.data = data;
+        this.contentVersion = null;
+        refreshMetadata();
     }
 
-    public String getDocumentType() {
+    Long getContentVersion() {
+        return contentVersion;
+    }
+
+    void setContentVersion(Long contentVersion) {
+        this.contentVersion = contentVersion;
+    }
+
+    /**
+     * Extract the document type, node count, node types and required roles
+     * from the workflow JSON. The columns are cleared when the JSON cannot be
+     * parsed.
+     */
+    public void refreshMetadata() {
         try {
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            java.util.List<java.util.Map<String, Object>> workflowNodes = mapper.readValue(
-                    this.data,
-                    new com.fasterxml.jackson.core.type.TypeReference<java.util.List<java.util.Map<String, Object>>>() {
-                    });
-
-            System.out.println("Parsed workflow nodes: " + workflowNodes);
-
-            for (java.util.Map<String, Object> node : workflowNodes) {
-                System.out.println("Node type: " + node.get("type"));
-                if ("Upload".equals(node.get("type"))) {
-                    @SuppressWarnings("unchecked")
-                    java.util.Map<String, String> props = (java.util.Map<String, String>) node.get("props");
-                    System.out.println("Upload node props: " + props);
-                    if (props != null && props.containsKey("documentType")) {
-                        return props.get("documentType");
-                    }
+            WorkflowDocument document = WorkflowDocument.parse(this.data);
+            List<String> types = new ArrayList<>();
+            Set<String> roles = new LinkedHashSet<>();
+            for (WorkflowNodeData node : document.getNodes()) {
+                types.add(node.getType());
+                String role = CompiledWorkflowDefinition.requiredRoleFor(node.getType(), node.getProps());
+                if (role != null) {
+                    roles.add(role);
                 }
             }
+            this.documentType = document.findDocumentType();
+            this.nodeCount = types.size();
+            this.nodeTypes = String.join(LIST_SEPARATOR, types);
+            this.requiredRoles = String.join(LIST_SEPARATOR, roles);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error parsing JSON of workflow {}: {}", id, e.getMessage());
+            this.documentType = null;
+            this.nodeCount = null;
+            this.nodeTypes = null;
+            this.requiredRoles = null;
+        }
+    }
 
-            // If we reach here, no document type was found
-            System.out.println("No document type found in workflow JSON");
+    public String getDocumentType() {
+        return documentType;
+    }
 
-        } catch (Exception e) {
-            // Log the exception for debugging
-            System.err.println("Error parsing workflow JSON: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return null;
+    public Integer getNodeCount() {
+        return nodeCount;
+    }
+
+    public String getNodeTypes() {
+        return nodeTypes;
+    }
+
+    public String getRequiredRoles() {
+        return requiredRoles;
     }
 }
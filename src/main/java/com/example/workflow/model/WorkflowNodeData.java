@@ -0,0 +1,87 @@
+package com.example.workflow.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A node of the workflow JSON, see {@link WorkflowDocument}
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WorkflowNodeData {
+
+    /** Id of the node on the designer canvas, referenced by connections */
+    private String id;
+
+    private String name;
+
+    private String type;
+
+    private String description;
+
+    private Map<String, String> props = new LinkedHashMap<>();
+
+    /** Position of the node on the designer canvas, when it was saved from there */
+    private Integer order;
+
+    private NodePosition position;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Map<String, String> getProps() {
+        return props;
+    }
+
+    public void setProps(Map<String, String> props) {
+        this.props = props;
+    }
+
+    public Integer getOrder() {
+        return order;
+    }
+
+    public void setOrder(Integer order) {
+        this.order = order;
+    }
+
+    public NodePosition getPosition() {
+        return position;
+    }
+
+    public void setPosition(NodePosition position) {
+        this.position = position;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.workflow.model;
+
+/**
+ * Projection of the precomputed columns of a workflow, for listings that do
+ * not need the workflow JSON
+ */
+public interface WorkflowSummary {
+
+    Long getId();
+
+    String getName();
+
+    String getDocumentType();
+
+    Integer getNodeCount();
+
+    String getNodeTypes();
+
+    String getRequiredRoles();
+}
@@ -0,0 +1,27 @@
+package com.example.workflow.repository;
+
+import com.example.workflow.model.DataMigrationEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface DataMigrationRepository extends JpaRepository<DataMigrationEntity, String> {
+
+    /**
+     * Record a completed migration, without failing when another instance
+     * recorded it first
+     *
+     * @return The number of inserted rows
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into data_migrations (name, applied_at) values (:name, :appliedAt) "
+            + "on conflict (name) do nothing", nativeQuery = true)
+    int markApplied(@Param("name") String name, @Param("appliedAt") LocalDateTime appliedAt);
+}
@@ -2,9 +2,27 @@ package com.example.workflow.repository;
 
 import com.example.workflow.entity.OrganizationEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 public interface OrganizationRepository extends JpaRepository<OrganizationEntity, String> {
     Optional<OrganizationEntity> findByName(String name);
-}
\ No newline at end of file
+
+    /**
+     * Insert an organization unless one with the same id exists, without
+     * failing when a concurrent request inserts it first
+     *
+     * @return The number of inserted rows
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into organizations (id, name, created_at) values (:id, :name, :createdAt) "
+            + "on conflict (id) do nothing", nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id, @Param("name") String name,
+            @Param("createdAt") LocalDateTime createdAt);
+}
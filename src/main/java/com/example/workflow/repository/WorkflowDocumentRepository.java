@@ -0,0 +1,9 @@
+package com.example.workflow.repository;
+
+import com.example.workflow.model.WorkflowDocumentEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface WorkflowDocumentRepository extends JpaRepository<WorkflowDocumentEntity, Long> {
+}
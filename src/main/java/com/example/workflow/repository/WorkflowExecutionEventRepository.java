@@ -0,0 +1,22 @@
+package com.example.workflow.repository;
+
+import com.example.workflow.model.WorkflowExecutionEventEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface WorkflowExecutionEventRepository extends JpaRepository<WorkflowExecutionEventEntity, Long> {
+
+    List<WorkflowExecutionEventEntity> findByExecutionIdOrderBySequenceAsc(Long executionId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from WorkflowExecutionEventEntity e where e.executionId = :executionId")
+    int deleteByExecutionId(@Param("executionId") Long executionId);
+}
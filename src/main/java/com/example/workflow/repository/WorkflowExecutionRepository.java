@@ -3,10 +3,14 @@ package com.example.workflow.repository;
 import com.example.workflow.entity.OrganizationEntity;
 import com.example.workflow.model.WorkflowExecutionEntity;
 import com.example.workflow.model.WorkflowJsonEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,12 +23,62 @@ public interface WorkflowExecutionRepository extends JpaRepository<WorkflowExecu
 
     List<WorkflowExecutionEntity> findByCreatedBy(String username);
 
-    List<WorkflowExecutionEntity> findAllByOrderByUpdatedAtDesc();
-
     List<WorkflowExecutionEntity> findByOrganizationOrderByUpdatedAtDesc(OrganizationEntity organization);
 
     Optional<WorkflowExecutionEntity> findByIdAndOrganization(Long id, OrganizationEntity organization);
 
     List<WorkflowExecutionEntity> findByWorkflowAndOrganization(WorkflowJsonEntity workflow,
             OrganizationEntity organization);
-}
\ No newline at end of file
+
+    /**
+     * One page of the executions of an organization that the user started or
+     * whose current node requires one of the given roles, optionally narrowed
+     * by a lower-case LIKE pattern on file name, workflow name or status, with
+     * backslash as the escape character. Pass an empty filter to match
+     * everything. Backed by the organization/creator and organization/required
+     * role indexes on workflow_executions.
+     */
+    @Query("select e from WorkflowExecutionEntity e where e.organization = :organization "
+            + "and (e.createdBy = :username or e.requiredRole in :roles) "
+            + "and (:filter = '' or lower(e.uploadedFileName) like :filter escape '\\' "
+            + "or lower(e.workflow.name) like :filter escape '\\' or lower(e.status) like :filter escape '\\')")
+    List<WorkflowExecutionEntity> findVisibleToUser(@Param("organization") OrganizationEntity organization,
+            @Param("username") String username, @Param("roles") Collection<String> roles,
+            @Param("filter") String filter, Pageable pageable);
+
+    /**
+     * Count of the executions matched by
+     * {@link #findVisibleToUser(OrganizationEntity, String, Collection, String, Pageable)}
+     */
+    @Query("select count(e) from WorkflowExecutionEntity e where e.organization = :organization "
+            + "and (e.createdBy = :username or e.requiredRole in :roles) "
+            + "and (:filter = '' or lower(e.uploadedFileName) like :filter escape '\\' "
+            + "or lower(e.workflow.name) like :filter escape '\\' or lower(e.status) like :filter escape '\\')")
+    long countVisibleToUser(@Param("organization") OrganizationEntity organization,
+            @Param("username") String username, @Param("roles") Collection<String> roles,
+            @Param("filter") String filter);
+
+    /**
+     * Executions that have not completed, in id order, used to recompute the
+     * denormalized current node columns of rows written before the engine
+     * maintained them
+     */
+    @Query("select e from WorkflowExecutionEntity e where (e.status is null or e.status <> 'Completed') "
+            + "and e.id > :afterId order by e.id")
+    List<WorkflowExecutionEntity> findNotCompleted(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Executions whose node statuses are still only stored in the legacy JSON
+     * map, in id order
+     */
+    @Query("select e from WorkflowExecutionEntity e where e.nodeStatusCodes is null and e.id > :afterId "
+            + "order by e.id")
+    List<WorkflowExecutionEntity> findMissingNodeStatusCodes(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Id and initiator of every execution with a known initiator, used to
+     * bulk load the execution ACL
+     */
+    @Query("select e.id, e.createdBy from WorkflowExecutionEntity e where e.createdBy is not null")
+    List<Object[]> findExecutionInitiators();
+}
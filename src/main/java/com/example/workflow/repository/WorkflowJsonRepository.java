@@ -3,13 +3,47 @@ package com.example.workflow.repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.workflow.entity.OrganizationEntity;
 import com.example.workflow.model.WorkflowJsonEntity;
+import com.example.workflow.model.WorkflowSummary;
 
 @Repository
 public interface WorkflowJsonRepository extends JpaRepository<WorkflowJsonEntity, Long> {
     List<WorkflowJsonEntity> findByOrganization(OrganizationEntity organization);
+
+    /**
+     * Precomputed columns of all workflows, without loading the workflow JSON
+     */
+    @Query("select w.id as id, w.name as name, w.documentType as documentType, w.nodeCount as nodeCount, "
+            + "w.nodeTypes as nodeTypes, w.requiredRoles as requiredRoles from WorkflowJsonEntity w order by w.id")
+    List<WorkflowSummary> findAllSummaries();
+
+    /**
+     * Workflows whose metadata columns have not been extracted, in id order,
+     * for batch processing
+     */
+    List<WorkflowJsonEntity> findByNodeCountIsNullAndIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    /**
+     * Fill the metadata columns of a workflow, unless it has been saved since
+     * its JSON was read
+     *
+     * @return The number of updated rows
+     */
+    @Transactional
+    @Modifying
+    @Query("update WorkflowJsonEntity w set w.documentType = :documentType, w.nodeCount = :nodeCount, "
+            + "w.nodeTypes = :nodeTypes, w.requiredRoles = :requiredRoles "
+            + "where w.id = :id and w.nodeCount is null and w.data = :data")
+    int backfillMetadata(@Param("id") Long id, @Param("data") String data,
+            @Param("documentType") String documentType, @Param("nodeCount") Integer nodeCount,
+            @Param("nodeTypes") String nodeTypes, @Param("requiredRoles") String requiredRoles);
 }
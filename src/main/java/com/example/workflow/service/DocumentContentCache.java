@@ -0,0 +1,252 @@
+package com.example.workflow.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Local content-addressed file cache of document blobs.
+ *
+ * Blobs are immutable, so a file is copied from document_blobs on first
+ * access and served from disk afterwards, where it can be streamed to clients
+ * with channel transfers. The cache is bounded in size; the least
+ * recently served files are evicted first and are copied again from the
+ * database when next requested. Files are only handed out opened, so an
+ * eviction never pulls content away from a reader.
+ */
+@Component
+public class DocumentContentCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentContentCache.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Path cacheDir;
+    private final long maxSize;
+
+    /** Bytes in the cache, as last counted plus files cached since */
+    private final AtomicLong size = new AtomicLong();
+
+    /** Held while the cache is trimmed, so only one thread walks it */
+    private final ReentrantLock trimLock = new ReentrantLock();
+
+    public DocumentContentCache(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            @Value("${workflow.documents.cache-dir:${java.io.tmpdir}/workflow-document-cache}") String cacheDir,
+            @Value("${workflow.documents.cache-max-size:1GB}") DataSize maxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheDir = Paths.get(cacheDir);
+        this.maxSize = maxSize.toBytes();
+    }
+
+    /**
+     * Open the content of the blob with the given hash, copying it from the
+     * database into the cache on first access. When a concurrent trim evicts
+     * the cached file before it is opened, the blob is read from the database
+     * into a private file instead, which is deleted when the channel is closed.
+     *
+     * @param sha256 The hex encoded SHA-256 hash of the content
+     * @return A channel over the content, to be closed by the caller
+     * @throws RuntimeException if no blob with that hash exists
+     */
+    public FileChannel open(String sha256) throws IOException {
+        Path file = getContentFile(sha256);
+        try {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            logger.debug("Document content {} was evicted before it was opened, reading it from the database", sha256);
+        }
+
+        Path tempFile = Files.createTempFile(cacheDir, sha256, ".tmp");
+        try {
+            copyBlob(sha256, tempFile);
+            return FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Get the cached file of a blob, copying it from the database first if
+     * needed. The file may be evicted at any time after this returns.
+     */
+    private Path getContentFile(String sha256) {
+        if (sha256 == null || !sha256.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Invalid content hash: " + sha256);
+        }
+
+        Path file = fileFor(sha256);
+        if (Files.exists(file)) {
+            markUsed(file);
+            return file;
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = Files.createTempFile(file.getParent(), sha256, ".tmp");
+            try {
+                copyBlob(sha256, tempFile);
+
+                // Concurrent copies of the same blob are identical, so the last move simply wins
+                long fileSize = Files.size(tempFile);
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                if (size.addAndGet(fileSize) > maxSize) {
+                    trim(file);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not cache document content " + sha256, e);
+        }
+        return file;
+    }
+
+    /**
+     * Copy the content of a blob from the database into the given file
+     */
+    private void copyBlob(String sha256, Path target) {
+        Boolean found = transactionTemplate.execute(status -> jdbcTemplate.query(
+                "select content from document_blobs where sha256 = ?",
+                rs -> {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    try (InputStream in = rs.getBinaryStream(1)) {
+                        Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return true;
+                },
+                sha256));
+        if (!Boolean.TRUE.equals(found)) {
+            throw new RuntimeException("Document content not found: " + sha256);
+        }
+    }
+
+    /**
+     * Remove the cached file of a blob that no longer exists
+     */
+    public void delete(String sha256) {
+        Path file = fileFor(sha256);
+        try {
+            long fileSize = Files.size(file);
+            if (Files.deleteIfExists(file)) {
+                size.addAndGet(-fileSize);
+            }
+        } catch (NoSuchFileException e) {
+            // Never cached on this instance
+        } catch (IOException e) {
+            logger.warn("Could not delete cached document content {}: {}", sha256, e.getMessage());
+        }
+    }
+
+    private Path fileFor(String sha256) {
+        return cacheDir.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    /**
+     * Record a cache hit in the modification time, which orders eviction
+     */
+    private void markUsed(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Evicted meanwhile, or not writable; the file is copied again when needed
+        }
+    }
+
+    /**
+     * Count the cache and, while it is over workflow.documents.cache-max-size,
+     * delete the least recently used files. Runs at startup to account for
+     * files left by an earlier run, and whenever a newly cached file pushes
+     * the cache over its limit. Files that are open keep their content until
+     * they are closed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void trim() {
+        trim(null);
+    }
+
+    /**
+     * @param keep A file that is about to be served and must not be evicted, or null
+     */
+    private void trim(Path keep) {
+        if (!trimLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!Files.isDirectory(cacheDir)) {
+                return;
+            }
+            List<CachedFile> files = new ArrayList<>();
+            try (Stream<Path> paths = Files.walk(cacheDir, 2)) {
+                paths.filter(path -> !path.getFileName().toString().endsWith(".tmp")).forEach(path -> {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        if (attributes.isRegularFile()) {
+                            files.add(new CachedFile(path, attributes.size(), attributes.lastModifiedTime()));
+                        }
+                    } catch (IOException e) {
+                        // Deleted while walking
+                    }
+                });
+            }
+
+            long total = files.stream().mapToLong(CachedFile::size).sum();
+            files.sort(Comparator.comparing(CachedFile::lastUsed));
+            int evicted = 0;
+            for (CachedFile file : files) {
+                if (total <= maxSize) {
+                    break;
+                }
+                if (file.path().equals(keep)) {
+                    continue;
+                }
+                if (Files.deleteIfExists(file.path())) {
+                    evicted++;
+                }
+                total -= file.size();
+            }
+            size.set(total);
+            if (evicted > 0) {
+                logger.debug("Evicted {} files from the document cache, {} bytes remain", evicted, total);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not trim the document cache: {}", e.getMessage());
+        } finally {
+            trimLock.unlock();
+        }
+    }
+
+    private record CachedFile(Path path, long size, FileTime lastUsed) {
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.workflow.service;
+
+import com.example.workflow.model.WorkflowDocumentEntity;
+import com.example.workflow.repository.WorkflowDocumentRepository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores uploaded workflow documents outside the execution rows.
+ *
+ * Document content is content-addressed: each distinct SHA-256 hash is stored
+ * once in document_blobs and reference-counted by the workflow_documents rows
+ * pointing at it, so re-uploading the same file after a return or rejection
+ * only adds a metadata row. Executions keep the id of their current document.
+ *
+ * Blobs are immutable, so they are served from the local
+ * {@link DocumentContentCache}.
+ */
+@Service
+public class DocumentStorageService {
+
+    private final WorkflowDocumentRepository documentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final DocumentContentCache contentCache;
+    private final long maxUploadSize;
+    private final WorkflowMetrics metrics;
+
+    public DocumentStorageService(WorkflowDocumentRepository documentRepository, JdbcTemplate jdbcTemplate,
+            DocumentContentCache contentCache, WorkflowMetrics metrics,
+            @Value("${workflow.documents.max-upload-size:50MB}") DataSize maxUploadSize) {
+        this.documentRepository = documentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.contentCache = contentCache;
+        this.maxUploadSize = maxUploadSize.toBytes();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the URL under which the current document of an execution is served
+     * by the REST API, relative to the application root
+     */
+    public static String executionDocumentUrl(Long executionId) {
+        return "api/workflows/executions/" + executionId + "/document";
+    }
+
+    /**
+     * Get the maximum accepted upload size in bytes
+     */
+    public long getMaxUploadSize() {
+        return maxUploadSize;
+    }
+
+    /**
+     * Store a new document
+     *
+     * @param content  The document content
+     * @param fileName The original file name
+     * @param mimeType The MIME type reported by the client
+     * @return The ID of the stored document
+     */
+    @Transactional
+    public Long store(byte[] content, String fileName, String mimeType) {
+        String sha256 = sha256Hex(content);
+        try {
+            acquireBlob(sha256, content.length, () -> new ByteArrayInputStream(content));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return insertDocument(fileName, mimeType, content.length, sha256);
+    }
+
+    /**
+     * Store a new document from a file. The content is streamed into the
+     * database, and only if no blob with the same hash exists yet.
+     *
+     * @param file     The file holding the document content
+     * @param fileName The original file name
+     * @param mimeType The MIME type reported by the client
+     * @param sha256   The hex encoded SHA-256 checksum of the content
+     * @return The ID of the stored document
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    @Transactional
+    public Long store(Path file, String fileName, String mimeType, String sha256) {
+        try {
+            long size = Files.size(file);
+            acquireBlob(sha256, size, () -> Files.newInputStream(file));
+            return insertDocument(fileName, mimeType, size, sha256);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read uploaded file " + fileName, e);
+        }
+    }
+
+    /**
+     * Find the metadata of a stored document
+     */
+    @Transactional(readOnly = true)
+    public Optional<WorkflowDocumentEntity> findDocument(Long documentId) {
+        return documentId == null ? Optional.empty() : documentRepository.findById(documentId);
+    }
+
+    /**
+     * Open the content of a stored document for reading
+     *
+     * @param documentId The document ID
+     * @return A stream over the document content
+     * @throws RuntimeException if the document is not found
+     */
+    public InputStream openStream(Long documentId) {
+        WorkflowDocumentEntity document = findDocument(documentId)
+                .orElseThrow(() -> new RuntimeException("Document not found: " + documentId));
+        try {
+            return Channels.newInputStream(openContent(document.getSha256()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open document " + documentId, e);
+        }
+    }
+
+    /**
+     * Open the content of the blob with the given hash, see
+     * {@link DocumentContentCache#open(String)}
+     */
+    public FileChannel openContent(String sha256) throws IOException {
+        return contentCache.open(sha256);
+    }
+
+    /**
+     * Delete a stored document and release its blob. Unknown or null ids are
+     * ignored.
+     */
+    @Transactional
+    public void delete(Long documentId) {
+        if (documentId == null) {
+            return;
+        }
+        List<String> hashes = jdbcTemplate.queryForList(
+                "delete from workflow_documents where id = ? returning sha256", String.class, documentId);
+        if (!hashes.isEmpty() && hashes.get(0) != null) {
+            releaseBlob(hashes.get(0));
+        }
+    }
+
+    /**
+     * Add a reference to the blob with the given hash, inserting its content
+     * only if it is not stored yet. Concurrent inserts of the same content are
+     * resolved by the primary key on sha256.
+     */
+    private void acquireBlob(String sha256, long size, ContentSource source) throws IOException {
+        int updated = jdbcTemplate.update(
+                "update document_blobs set ref_count = ref_count + 1 where sha256 = ?", sha256);
+        if (updated > 0) {
+            return;
+        }
+
+        try (InputStream in = source.open()) {
+            jdbcTemplate.update(
+                    "insert into document_blobs (sha256, size_bytes, ref_count, content, created_at) "
+                            + "values (?, ?, 1, ?, ?) "
+                            + "on conflict (sha256) do update set ref_count = document_blobs.ref_count + 1",
+                    ps -> {
+                        ps.setString(1, sha256);
+                        ps.setLong(2, size);
+                        ps.setBinaryStream(3, in, size);
+                        ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+                    });
+        }
+    }
+
+    /**
+     * Drop one reference to a blob and delete it once nothing refers to it.
+     * A concurrent {@link #acquireBlob} that increments the count first keeps
+     * the row alive. The cached file of a deleted blob is removed once the
+     * deletion has committed, so a read in between cannot cache it again.
+     */
+    private void releaseBlob(String sha256) {
+        jdbcTemplate.update("update document_blobs set ref_count = ref_count - 1 where sha256 = ?", sha256);
+        int deleted = jdbcTemplate.update("delete from document_blobs where sha256 = ? and ref_count <= 0", sha256);
+        if (deleted == 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    contentCache.delete(sha256);
+                }
+            });
+        } else {
+            contentCache.delete(sha256);
+        }
+    }
+
+    private Long insertDocument(String fileName, String mimeType, long size, String sha256) {
+        Long id = jdbcTemplate.queryForObject(
+                "insert into workflow_documents (file_name, mime_type, size_bytes, sha256, created_at) "
+                        + "values (?, ?, ?, ?, ?) returning id",
+                Long.class, fileName, mimeType, size, sha256, Timestamp.valueOf(LocalDateTime.now()));
+        metrics.recordUploadSize(size);
+        return id;
+    }
+
+    private static String sha256Hex(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ContentSource {
+        InputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.workflow.service;
+
+/**
+ * Thrown when a workflow execution was changed by someone else between being
+ * read and being advanced. The caller should reload the execution and decide
+ * again, instead of retrying the same change blindly.
+ */
+public class ExecutionConflictException extends RuntimeException {
+
+    private final Long executionId;
+
+    public ExecutionConflictException(Long executionId, Throwable cause) {
+        super("Workflow execution " + executionId + " was modified by another user", cause);
+        this.executionId = executionId;
+    }
+
+    public Long getExecutionId() {
+        return executionId;
+    }
+}
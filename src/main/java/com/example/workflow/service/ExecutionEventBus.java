@@ -0,0 +1,87 @@
+package com.example.workflow.service;
+
+import com.example.workflow.model.ExecutionProgressEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process bus that delivers execution progress to subscribers of an
+ * execution, such as the views showing it in other sessions.
+ *
+ * The engine publishes {@link ExecutionProgressEvent}s as Spring application
+ * events inside its transaction; they are handed to subscribers only once
+ * the transaction has committed, so a subscriber never sees a step that was
+ * rolled back. Each subscriber is called on the application task executor,
+ * outside the committed transaction and off the thread of the user who made
+ * the step, so that request does not wait for the views and the views do not
+ * share its persistence context. Subscribers are local to this instance.
+ */
+@Component
+public class ExecutionEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionEventBus.class);
+
+    /** Listeners by execution id */
+    private final Map<Long, List<Consumer<ExecutionProgressEvent>>> subscribers = new ConcurrentHashMap<>();
+
+    private final TaskExecutor taskExecutor;
+
+    public ExecutionEventBus(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Receive the progress of an execution until the returned subscription is
+     * cancelled. Listeners run on a task executor thread, each in its own task,
+     * and must hand off any UI work, e.g. through {@code UI.access}.
+     */
+    public Subscription subscribe(Long executionId, Consumer<ExecutionProgressEvent> listener) {
+        subscribers.compute(executionId, (id, listeners) -> {
+            List<Consumer<ExecutionProgressEvent>> updated = listeners != null ? listeners
+                    : new CopyOnWriteArrayList<>();
+            updated.add(listener);
+            return updated;
+        });
+        return () -> subscribers.computeIfPresent(executionId, (id, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    @TransactionalEventListener
+    public void publish(ExecutionProgressEvent event) {
+        List<Consumer<ExecutionProgressEvent>> listeners = subscribers.get(event.executionId());
+        if (listeners == null) {
+            return;
+        }
+        for (Consumer<ExecutionProgressEvent> listener : listeners) {
+            // One slow or failing view must not hold up the others
+            taskExecutor.execute(() -> deliver(event, listener));
+        }
+    }
+
+    private void deliver(ExecutionProgressEvent event, Consumer<ExecutionProgressEvent> listener) {
+        try {
+            listener.accept(event);
+        } catch (RuntimeException e) {
+            logger.warn("Progress listener of execution {} failed", event.executionId(), e);
+        }
+    }
+
+    /**
+     * Handle to stop receiving the progress of an execution
+     */
+    @FunctionalInterface
+    public interface Subscription {
+        void cancel();
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.workflow.service;
+
+import com.example.workflow.config.JsonMappers;
+import com.example.workflow.model.CompiledWorkflowDefinition;
+import com.example.workflow.model.ExecutionEventType;
+import com.example.workflow.model.NodeStatus;
+import com.example.workflow.model.WorkflowExecutionEventEntity;
+import com.example.workflow.repository.WorkflowExecutionEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Appends to and replays the event log of workflow executions.
+ *
+ * Each event payload is a delta: the node index and status after the step,
+ * the node statuses that changed as a list of {index, name, status} entries
+ * keyed by node position, and the workflow data entries that were
+ * added, changed ("changes") or removed ("removed"). The execution row is the
+ * snapshot of the log up to its event_sequence, and {@link #replay} rebuilds
+ * the same state from the events alone.
+ */
+@Service
+public class ExecutionEventService {
+
+    @Autowired
+    private WorkflowExecutionEventRepository eventRepository;
+
+    @Autowired
+    private JsonMappers jsonMappers;
+
+    /**
+     * Append an event to the log of an execution. The sequence must come from
+     * {@link com.example.workflow.model.WorkflowExecutionEntity#nextEventSequence()}
+     * of the execution saved in the same transaction, so the version check on
+     * the execution also guards the sequence.
+     */
+    @Transactional
+    public WorkflowExecutionEventEntity append(Long executionId, int sequence, ExecutionEventType type,
+            Integer nodeIndex, String nodeName, Map<String, Object> payload) {
+        WorkflowExecutionEventEntity event = new WorkflowExecutionEventEntity();
+        event.setExecutionId(executionId);
+        event.setSequence(sequence);
+        event.setEventType(type);
+        event.setNodeIndex(nodeIndex);
+        event.setNodeName(nodeName);
+        event.setActor(currentActor());
+        try {
+            event.setPayload(jsonMappers.writer().writeValueAsString(payload));
+        } catch (Exception e) {
+            throw new RuntimeException("Error serializing execution event", e);
+        }
+        return eventRepository.save(event);
+    }
+
+    /**
+     * Get the full event log of an execution, oldest first
+     */
+    public List<WorkflowExecutionEventEntity> getHistory(Long executionId) {
+        return eventRepository.findByExecutionIdOrderBySequenceAsc(executionId);
+    }
+
+    /**
+     * Rebuild the state of an execution by folding its event log
+     */
+    public ReplayedState replay(Long executionId) {
+        ReplayedState state = new ReplayedState();
+        for (WorkflowExecutionEventEntity event : getHistory(executionId)) {
+            state.apply(event.getSequence(), readPayload(event));
+        }
+        return state;
+    }
+
+    /**
+     * Delete the event log of a deleted execution
+     */
+    @Transactional
+    public void deleteHistory(Long executionId) {
+        eventRepository.deleteByExecutionId(executionId);
+    }
+
+    /**
+     * Compute the entries of a map that were added or changed between two
+     * versions of it
+     */
+    public static <V> Map<String, V> changedEntries(Map<String, V> before, Map<String, V> after) {
+        Map<String, V> changes = new LinkedHashMap<>();
+        after.forEach((key, value) -> {
+            if (!before.containsKey(key) || !Objects.equals(before.get(key), value)) {
+                changes.put(key, value);
+            }
+        });
+        return changes;
+    }
+
+    /**
+     * Compute the keys of a map that were removed between two versions of it
+     */
+    public static List<String> removedKeys(Map<String, ?> before, Map<String, ?> after) {
+        List<String> removed = new ArrayList<>();
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        return removed;
+    }
+
+    private Map<String, Object> readPayload(WorkflowExecutionEventEntity event) {
+        if (event.getPayload() == null || event.getPayload().isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            return jsonMappers.dataMapReader().readValue(event.getPayload());
+        } catch (Exception e) {
+            throw new RuntimeException("Error reading execution event " + event.getId(), e);
+        }
+    }
+
+    /**
+     * The user making the step, by preferred_username like created_by
+     */
+    private String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return "system";
+        }
+        if (authentication.getPrincipal() instanceof OidcUser oidcUser) {
+            String preferredUsername = oidcUser.getAttribute("preferred_username");
+            if (preferredUsername != null && !preferredUsername.isEmpty()) {
+                return preferredUsername;
+            }
+        }
+        return authentication.getName();
+    }
+
+    /**
+     * Execution state rebuilt from the event log
+     */
+    public static class ReplayedState {
+
+        private int sequence;
+        private int currentNodeIndex;
+        private String status;
+        private Long documentId;
+        private final Map<Integer, NodeStatus> nodeStatuses = new TreeMap<>();
+        private final Map<String, Object> workflowData = new LinkedHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        void apply(int eventSequence, Map<String, Object> payload) {
+            sequence = eventSequence;
+            if (payload.get("toNodeIndex") instanceof Number index) {
+                currentNodeIndex = index.intValue();
+            }
+            if (payload.containsKey("status")) {
+                status = (String) payload.get("status");
+            }
+            if (payload.get("documentId") instanceof Number id) {
+                documentId = id.longValue();
+            }
+            if (payload.get("nodeStatuses") instanceof List<?> changes) {
+                for (Object change : changes) {
+                    if (change instanceof Map<?, ?> entry && entry.get("index") instanceof Number index) {
+                        nodeStatuses.put(index.intValue(),
+                                NodeStatus.fromLabel((String) entry.get("status"), NodeStatus.PENDING));
+                    }
+                }
+            }
+            if (payload.get("changes") instanceof Map<?, ?> changes) {
+                workflowData.putAll((Map<String, Object>) changes);
+            }
+            if (payload.get("removed") instanceof List<?> removed) {
+                removed.forEach(workflowData::remove);
+            }
+        }
+
+        public int getSequence() {
+            return sequence;
+        }
+
+        public int getCurrentNodeIndex() {
+            return currentNodeIndex;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Long getDocumentId() {
+            return documentId;
+        }
+
+        /**
+         * Get the replayed status of each node by position, as stored in
+         * node_status_codes. Positions no event changed are pending.
+         */
+        public NodeStatus[] getNodeStatusArray(CompiledWorkflowDefinition definition) {
+            NodeStatus[] statuses = new NodeStatus[definition.getNodeCount()];
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] = nodeStatuses.getOrDefault(i, NodeStatus.PENDING);
+            }
+            return statuses;
+        }
+
+        public Map<String, Object> getWorkflowData() {
+            return workflowData;
+        }
+    }
+}
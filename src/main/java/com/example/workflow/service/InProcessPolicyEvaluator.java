@@ -0,0 +1,122 @@
+package com.example.workflow.service;
+
+import com.example.workflow.model.CompiledWorkflowDefinition;
+import com.example.workflow.model.WorkflowExecutionEntity;
+import com.example.workflow.repository.WorkflowExecutionRepository;
+import com.example.workflow.repository.WorkflowJsonRepository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Policy evaluator that evaluates the workflow rule model in memory instead of
+ * calling OPA.
+ *
+ * Rules are built with {@link WorkflowPolicyGenerator#actionRoles} from the
+ * compiled workflow definition, so decisions match the Rego policies the
+ * remote evaluator deploys. Workflow rules are derived on each evaluation from
+ * the current row through {@link WorkflowDefinitionCache}, which recompiles
+ * when the content version changed, so edits made on another instance apply
+ * here too. Execution ACL entries live in this instance only; initiators of
+ * executions that were not deployed here are read from the database on first
+ * use.
+ */
+@Service
+@ConditionalOnProperty(name = "workflow.policy.evaluator", havingValue = "in-process")
+public class InProcessPolicyEvaluator implements PolicyEvaluator {
+
+    private static final Pattern PACKAGE_PATTERN = Pattern.compile("workflow_(\\d+)");
+
+    private final WorkflowJsonRepository workflowJsonRepository;
+    private final WorkflowExecutionRepository executionRepository;
+    private final WorkflowDefinitionCache definitionCache;
+
+    private final Map<Long, String> executionInitiators = new ConcurrentHashMap<>();
+
+    public InProcessPolicyEvaluator(WorkflowJsonRepository workflowJsonRepository,
+            WorkflowExecutionRepository executionRepository, WorkflowDefinitionCache definitionCache) {
+        this.workflowJsonRepository = workflowJsonRepository;
+        this.executionRepository = executionRepository;
+        this.definitionCache = definitionCache;
+    }
+
+    @Override
+    public void deployWorkflowPolicy(CompiledWorkflowDefinition definition) {
+        // Nothing to deploy; rules are derived from the stored workflow when evaluated
+    }
+
+    @Override
+    public void loadExecutionAcls(Map<Long, String> initiators) {
+        initiators.forEach(executionInitiators::putIfAbsent);
+    }
+
+    @Override
+    public void updateExecutionAcls(Map<Long, String> initiators, Collection<Long> removed) {
+        executionInitiators.putAll(initiators);
+        removed.forEach(executionInitiators::remove);
+    }
+
+    @Override
+    public boolean evaluateAllow(String policyPackage, Map<String, Object> input) {
+        Object action = input.get("action");
+        if (WorkflowPolicyGenerator.EXECUTION_POLICY_PACKAGE.equals(policyPackage)) {
+            // Execution level policy: only the initiator may upload
+            Object executionId = input.get("execution_id");
+            if (executionId == null || !executionId.toString().matches("\\d+")) {
+                return false;
+            }
+            return WorkflowPolicyGenerator.executionAllows(initiatorOf(Long.valueOf(executionId.toString())),
+                    action, input.get("username"));
+        }
+
+        Matcher matcher = PACKAGE_PATTERN.matcher(policyPackage);
+        if (!matcher.matches()) {
+            return false;
+        }
+        return WorkflowPolicyGenerator.allows(rulesOf(Long.valueOf(matcher.group(1))), action, input.get("role"));
+    }
+
+    @Override
+    public Set<String> evaluateAllowedActions(Long workflowId, Collection<String> actions,
+            Collection<String> roles) {
+        Map<String, Set<String>> rules = rulesOf(workflowId);
+        Set<String> allowedActions = new HashSet<>();
+        for (String action : actions) {
+            for (String role : roles) {
+                if (WorkflowPolicyGenerator.allows(rules, action, role)) {
+                    allowedActions.add(action);
+                    break;
+                }
+            }
+        }
+        return allowedActions;
+    }
+
+    private Map<String, Set<String>> rulesOf(Long workflowId) {
+        return workflowJsonRepository.findById(workflowId)
+                .map(definitionCache::getCompiled)
+                .map(WorkflowPolicyGenerator::actionRoles)
+                .orElse(Map.of());
+    }
+
+    private String initiatorOf(Long executionId) {
+        String initiator = executionInitiators.get(executionId);
+        if (initiator == null) {
+            initiator = executionRepository.findById(executionId)
+                    .map(WorkflowExecutionEntity::getCreatedBy)
+                    .orElse(null);
+            if (initiator != null) {
+                executionInitiators.putIfAbsent(executionId, initiator);
+            }
+        }
+        return initiator;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.workflow.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Moves documents still held in workflow_executions.uploaded_document into
+ * workflow_documents and document_blobs, see {@link DocumentStorageService}
+ */
+@Component
+public class LegacyDocumentMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(LegacyDocumentMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public LegacyDocumentMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Move the documents of executions that still hold their file inline. The
+     * copy runs entirely in the database, one execution per transaction, so
+     * no file passes through the heap.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateExecutionDocuments() {
+        try {
+            if (columnExists("workflow_executions", "uploaded_document")) {
+                migrate();
+            }
+        } catch (Exception e) {
+            logger.error("Error migrating legacy documents", e);
+        }
+    }
+
+    private void migrate() {
+        List<Long> executionIds = jdbcTemplate.queryForList(
+                "select id from workflow_executions where uploaded_document is not null and document_id is null",
+                Long.class);
+
+        for (Long executionId : executionIds) {
+            transactionTemplate.executeWithoutResult(status -> {
+                String sha256 = jdbcTemplate.queryForObject(
+                        "insert into document_blobs (sha256, size_bytes, ref_count, content, created_at) "
+                                + "select encode(sha256(uploaded_document), 'hex'), octet_length(uploaded_document), "
+                                + "1, uploaded_document, now() from workflow_executions where id = ? "
+                                + "on conflict (sha256) do update set ref_count = document_blobs.ref_count + 1 "
+                                + "returning sha256",
+                        String.class, executionId);
+                Long documentId = jdbcTemplate.queryForObject(
+                        "insert into workflow_documents (file_name, mime_type, size_bytes, sha256, created_at) "
+                                + "select uploaded_file_name, mime_type, octet_length(uploaded_document), ?, "
+                                + "coalesce(updated_at, now()) from workflow_executions where id = ? returning id",
+                        Long.class, sha256, executionId);
+                jdbcTemplate.update(
+                        "update workflow_executions set document_id = ?, uploaded_document = null where id = ?",
+                        documentId, executionId);
+            });
+        }
+
+        if (!executionIds.isEmpty()) {
+            logger.info("Migrated {} execution documents to document_blobs", executionIds.size());
+        }
+    }
+
+    private boolean columnExists(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.columns where table_name = ? and column_name = ?",
+                Integer.class, table, column);
+        return count != null && count > 0;
+    }
+}
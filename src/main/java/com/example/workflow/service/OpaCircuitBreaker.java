@@ -0,0 +1,146 @@
+package com.example.workflow.service;
+
+import reactor.core.publisher.Mono;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Minimal circuit breaker for calls to OPA.
+ *
+ * After a number of consecutive failures the breaker opens and calls fail
+ * immediately with {@link CircuitOpenException} instead of tying up threads
+ * on a degraded server; callers treat that as a denied decision. Once the open
+ * duration has passed, a single trial call is let through and closes the
+ * breaker again if it succeeds.
+ *
+ * Only errors matching the failure predicate count, e.g. transport errors,
+ * timeouts and server errors; any other response shows the server is
+ * answering and counts as a success. A cancelled call counts as neither.
+ */
+public class OpaCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpaCircuitBreaker.class);
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Predicate<Throwable> isFailure;
+
+    /** Guards the breaker state */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    public OpaCircuitBreaker(int failureThreshold, Duration openDuration, Predicate<Throwable> isFailure) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.isFailure = isFailure;
+    }
+
+    /**
+     * Run a call through the breaker. The call is only subscribed to when the
+     * breaker lets it through, and its outcome is recorded.
+     */
+    public <T> Mono<T> protect(Mono<T> call) {
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                return Mono.error(new CircuitOpenException());
+            }
+            return call
+                    .doOnSuccess(result -> onSuccess())
+                    .doOnError(error -> {
+                        if (isFailure.test(error)) {
+                            onFailure();
+                        } else {
+                            onSuccess();
+                        }
+                    })
+                    .doOnCancel(this::onCancel);
+        });
+    }
+
+    private boolean tryAcquire() {
+        lock.lock();
+        try {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.nanoTime() - openedAt >= openNanos) {
+                        state = State.HALF_OPEN;
+                        return true;
+                    }
+                    return false;
+                default:
+                    // A trial call is already in flight
+                    return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onSuccess() {
+        lock.lock();
+        try {
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release the trial slot of a cancelled trial call, so the next call can
+     * try again instead of the breaker staying half-open
+     */
+    private void onCancel() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                state = State.OPEN;
+                openedAt = System.nanoTime() - openNanos;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onFailure() {
+        boolean opened = false;
+        int failures;
+        lock.lock();
+        try {
+            failures = ++consecutiveFailures;
+            if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                opened = state != State.OPEN;
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (opened) {
+            logger.warn("OPA circuit breaker opened after {} failures", failures);
+        }
+    }
+
+    /**
+     * Thrown when a call is rejected because the breaker is open
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        public CircuitOpenException() {
+            super("OPA circuit breaker is open");
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.workflow.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of OPA allow decisions with a time-to-live.
+ *
+ * Decisions are keyed by policy package and the full policy input. Deploying a
+ * policy must call {@link #invalidate(String)} for its package; a generation
+ * counter makes sure a decision that was requested before the invalidation is
+ * not stored after it.
+ */
+@Service
+public class OpaDecisionCache {
+
+    private final Map<DecisionKey, Decision> cache;
+    private final long ttlNanos;
+    private final WorkflowMetrics metrics;
+
+    /** Guards the cache and the generation */
+    private final ReentrantLock lock = new ReentrantLock();
+    private long generation;
+
+    public OpaDecisionCache(@Value("${opa.decision-cache.max-size:10000}") int maxSize,
+            @Value("${opa.decision-cache.ttl:30s}") Duration ttl, WorkflowMetrics metrics) {
+        this.ttlNanos = ttl.toNanos();
+        this.metrics = metrics;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DecisionKey, Decision> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get a cached decision
+     *
+     * @param policyPackage The policy package
+     * @param input         The policy input
+     * @return The cached decision, or null if there is no live entry
+     */
+    public Boolean get(String policyPackage, Map<String, Object> input) {
+        DecisionKey key = new DecisionKey(policyPackage, input);
+        Boolean allowed = null;
+        lock.lock();
+        try {
+            Decision decision = cache.get(key);
+            if (decision != null) {
+                if (System.nanoTime() - decision.createdAt() > ttlNanos) {
+                    cache.remove(key);
+                } else {
+                    allowed = decision.allowed();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        metrics.recordDecisionCacheLookup(allowed != null);
+        return allowed;
+    }
+
+    /**
+     * Get the current generation, to be passed to {@link #put} once the
+     * decision has been evaluated
+     */
+    public long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store a decision unless the cache was invalidated since the given
+     * generation was read
+     */
+    public void put(long requestGeneration, String policyPackage, Map<String, Object> input, boolean allowed) {
+        DecisionKey key = new DecisionKey(policyPackage, new HashMap<>(input));
+        lock.lock();
+        try {
+            if (requestGeneration == generation) {
+                cache.put(key, new Decision(allowed, System.nanoTime()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop all cached decisions of a policy package, e.g. after a new version
+     * of the policy was deployed
+     */
+    public void invalidate(String policyPackage) {
+        lock.lock();
+        try {
+            generation++;
+            cache.keySet().removeIf(key -> key.policyPackage().equals(policyPackage));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop all cached decisions
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation++;
+            cache.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record DecisionKey(String policyPackage, Map<String, Object> input) {
+        DecisionKey {
+            input = Collections.unmodifiableMap(input);
+        }
+    }
+
+    private record Decision(boolean allowed, long createdAt) {
+    }
+}
@@ -3,85 +3,62 @@ package com.example.workflow.service;
 import com.example.workflow.entity.OrganizationEntity;
 import com.example.workflow.repository.OrganizationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Resolves the organization of the current user from the Keycloak
+ * organization claim.
+ *
+ * Resolved entities are shared across sessions in a small cache keyed by
+ * organization id that reloads an entry once its time-to-live has passed, so
+ * repeated calls within a request or session do not hit the database.
+ * Organizations are only created here and never changed, so the time-to-live
+ * merely bounds how long a row edited directly in the database is served.
+ */
 @Service
 public class OrganizationService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrganizationService.class);
 
+    private static final String DEFAULT_ORGANIZATION_ID = "noOrgFound";
+    private static final String DEFAULT_ORGANIZATION_NAME = "Default Organization";
+
     private final OrganizationRepository organizationRepository;
+    private final long ttlNanos;
+
+    /** Resolved organizations by id */
+    private final Map<String, CachedOrganization> organizations;
+
+    /*
+     * A lock rather than a monitor, so request threads waiting for the cache
+     * do not pin their carrier when running on virtual threads
+     */
+    private final ReentrantLock organizationsLock = new ReentrantLock();
 
     @Autowired
-    public OrganizationService(OrganizationRepository organizationRepository) {
+    public OrganizationService(OrganizationRepository organizationRepository,
+            @Value("${workflow.organization-cache.max-size:1000}") int maxSize,
+            @Value("${workflow.organization-cache.ttl:5m}") Duration ttl) {
         this.organizationRepository = organizationRepository;
+        this.ttlNanos = ttl.toNanos();
+        this.organizations = lruMap(maxSize);
     }
 
     public OrganizationEntity getCurrentOrganization() {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            if (authentication != null && authentication.getPrincipal() instanceof OidcUser) {
-                OidcUser oidcUser = (OidcUser) authentication.getPrincipal();
-
-                // Debug: Log all claims to help troubleshoot
-                logger.info("OIDC Claims: {}", oidcUser.getClaims());
-
-                // Extract organization info from claims
-                Map<String, Object> orgClaims = oidcUser.getAttribute("organization");
-                logger.info("Organization claims: {}", orgClaims);
-
-                if (orgClaims != null && !orgClaims.isEmpty()) {
-                    // Get the first organization (assuming a user belongs to one org for now)
-                    String orgName = orgClaims.keySet().iterator().next();
-                    Map<String, String> orgDetails = (Map<String, String>) orgClaims.get(orgName);
-                    String orgId = orgDetails.get("id");
-
-                    // Find or create the organization
-                    Optional<OrganizationEntity> existingOrg = organizationRepository.findById(orgId);
-                    if (existingOrg.isPresent()) {
-                        return existingOrg.get();
-                    } else {
-                        // Create new organization if it doesn't exist
-                        OrganizationEntity newOrg = new OrganizationEntity();
-                        newOrg.setId(orgId);
-                        newOrg.setName(orgName);
-                        newOrg.setCreatedAt(LocalDateTime.now());
-                        return organizationRepository.save(newOrg);
-                    }
-                }
-
-                // If we can't extract from claims, try to find by username
-                String username = oidcUser.getPreferredUsername();
-                if (username != null) {
-                    // Try to find organization by username (if you have such mapping)
-                    // ...
-                }
-            }
-
-            // If we still don't have an organization, use a default one
-            String defaultOrgId = "noOrgFound";
-            Optional<OrganizationEntity> defaultOrgOpt = organizationRepository.findById(defaultOrgId);
-
-            if (defaultOrgOpt.isPresent()) {
-                logger.info("Using default organization: {}", defaultOrgId);
-                return defaultOrgOpt.get();
-            } else {
-                // Create a default organization if it doesn't exist
-                logger.info("Creating default organization with ID: {}", defaultOrgId);
-                OrganizationEntity defaultOrg = new OrganizationEntity();
-                defaultOrg.setId(defaultOrgId);
-                defaultOrg.setName("Default Organization");
-                defaultOrg.setCreatedAt(LocalDateTime.now());
-                return organizationRepository.save(defaultOrg);
-            }
+            OrganizationRef ref = currentOrganizationRef();
+            return resolve(ref);
         } catch (Exception e) {
             logger.error("Error in getCurrentOrganization", e);
             // Create an emergency fallback organization
@@ -93,4 +70,105 @@ public class OrganizationService {
             return fallbackOrg;
         }
     }
+
+    /**
+     * Get the id of the current user's organization from their ID token,
+     * without loading the organization
+     *
+     * @return The organization id, or null if the user did not log in through
+     *         OIDC or their organization claim cannot be read
+     */
+    public String getCurrentOrganizationId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof OidcUser)) {
+            return null;
+        }
+        try {
+            return currentOrganizationRef().id();
+        } catch (Exception e) {
+            logger.warn("Error reading the organization claim of {}: {}", authentication.getName(), e.toString());
+            return null;
+        }
+    }
+
+    private OrganizationRef currentOrganizationRef() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof OidcUser)) {
+            return new OrganizationRef(DEFAULT_ORGANIZATION_ID, DEFAULT_ORGANIZATION_NAME);
+        }
+
+        // Reading the claim is a lookup in the already parsed token
+        return extractOrganization((OidcUser) authentication.getPrincipal());
+    }
+
+    @SuppressWarnings("unchecked")
+    private OrganizationRef extractOrganization(OidcUser oidcUser) {
+        logger.debug("OIDC Claims: {}", oidcUser.getClaims());
+
+        // Extract organization info from claims
+        Map<String, Object> orgClaims = oidcUser.getAttribute("organization");
+        logger.debug("Organization claims: {}", orgClaims);
+
+        if (orgClaims != null && !orgClaims.isEmpty()) {
+            // Get the first organization (assuming a user belongs to one org for now)
+            String orgName = orgClaims.keySet().iterator().next();
+            Map<String, String> orgDetails = (Map<String, String>) orgClaims.get(orgName);
+            return new OrganizationRef(orgDetails.get("id"), orgName);
+        }
+
+        // If we can't extract from claims, use the default organization
+        logger.debug("No organization claim for user {}, using default organization",
+                oidcUser.getPreferredUsername());
+        return new OrganizationRef(DEFAULT_ORGANIZATION_ID, DEFAULT_ORGANIZATION_NAME);
+    }
+
+    private OrganizationEntity resolve(OrganizationRef ref) {
+        organizationsLock.lock();
+        try {
+            CachedOrganization cached = organizations.get(ref.id());
+            if (cached != null && System.nanoTime() - cached.loadedAt() <= ttlNanos) {
+                return cached.organization();
+            }
+        } finally {
+            organizationsLock.unlock();
+        }
+
+        OrganizationEntity organization = findOrCreate(ref);
+        organizationsLock.lock();
+        try {
+            organizations.put(ref.id(), new CachedOrganization(organization, System.nanoTime()));
+        } finally {
+            organizationsLock.unlock();
+        }
+        return organization;
+    }
+
+    /**
+     * Find the organization or create it. Concurrent first logins of the same
+     * organization insert at most one row; the losers read the winner's row.
+     */
+    private OrganizationEntity findOrCreate(OrganizationRef ref) {
+        return organizationRepository.findById(ref.id()).orElseGet(() -> {
+            if (organizationRepository.insertIfAbsent(ref.id(), ref.name(), LocalDateTime.now()) > 0) {
+                logger.info("Created organization {} ({})", ref.name(), ref.id());
+            }
+            return organizationRepository.findById(ref.id())
+                    .orElseThrow(() -> new IllegalStateException("Organization " + ref.id() + " was not created"));
+        });
+    }
+
+    private static Map<String, CachedOrganization> lruMap(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedOrganization> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private record OrganizationRef(String id, String name) {
+    }
+
+    private record CachedOrganization(OrganizationEntity organization, long loadedAt) {
+    }
 }
@@ -0,0 +1,350 @@
+package com.example.workflow.service;
+
+import com.example.workflow.model.CompiledWorkflowDefinition;
+
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Background pipeline that deploys workflow policies and execution ACL entries.
+ *
+ * Deployments are queued per key (a workflow policy package or an execution
+ * ACL key), so repeated deploys of the same key before it is processed
+ * collapse into the latest one. A single worker drains the queue in batches
+ * after a short delay: the execution ACL changes of a batch are sent in one
+ * request, workflow policy modules are deployed one by one. Failed
+ * deployments are retried with exponential backoff.
+ * While a deployment is queued or in flight, {@link #evaluatePending} answers
+ * decisions for its key from the rules being deployed, so callers never have
+ * to wait for it.
+ */
+@Service
+public class PolicyDeploymentQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(PolicyDeploymentQueue.class);
+
+    /** How long, and for how many keys at most, a given-up deployment is reported as failed */
+    private static final long FAILED_RETENTION_NANOS = Duration.ofHours(1).toNanos();
+    private static final int MAX_FAILED_KEYS = 10_000;
+
+    public enum State {
+        PENDING, DEPLOYED, FAILED
+    }
+
+    private final PolicyEvaluator policyEvaluator;
+    private final OpaDecisionCache decisionCache;
+    private final WorkflowMetrics metrics;
+    private final long batchDelayMillis;
+    private final int maxAttempts;
+    private final ScheduledExecutorService worker;
+
+    /** Deployments waiting to be processed, in submission order */
+    private final Map<String, Deployment> queued = new LinkedHashMap<>();
+
+    /** Guards queued and drainScheduled */
+    private final ReentrantLock queueLock = new ReentrantLock();
+
+    /** Deployments that are queued, in flight or waiting for a retry */
+    private final Map<String, Deployment> pending = new ConcurrentHashMap<>();
+
+    /** When the last deployment of a key gave up after all attempts, by key */
+    private final Map<String, Long> failed = new ConcurrentHashMap<>();
+
+    private boolean drainScheduled;
+
+    public PolicyDeploymentQueue(PolicyEvaluator policyEvaluator, OpaDecisionCache decisionCache,
+            WorkflowMetrics metrics,
+            @Value("${workflow.policy.deploy.batch-delay:200ms}") Duration batchDelay,
+            @Value("${workflow.policy.deploy.max-attempts:5}") int maxAttempts) {
+        this.policyEvaluator = policyEvaluator;
+        this.decisionCache = decisionCache;
+        this.metrics = metrics;
+        this.batchDelayMillis = batchDelay.toMillis();
+        this.maxAttempts = maxAttempts;
+        this.worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "policy-deployer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        metrics.monitorPendingDeployments(pending);
+    }
+
+    /**
+     * Queue the deployment of a workflow policy
+     */
+    public void submitWorkflowPolicy(CompiledWorkflowDefinition definition) {
+        Map<String, Set<String>> actionRoles = WorkflowPolicyGenerator.actionRoles(definition);
+        submit(new Deployment(WorkflowPolicyGenerator.policyPackage(definition.getWorkflowId()),
+                () -> policyEvaluator.deployWorkflowPolicy(definition),
+                input -> WorkflowPolicyGenerator.allows(actionRoles, input.get("action"), input.get("role"))));
+    }
+
+    /**
+     * Queue the deployment of the shared execution policy together with a full
+     * load of the execution ACL. The initiators are read when the deployment
+     * runs, so a retry never overwrites entries added in the meantime.
+     */
+    public void submitExecutionAcls(Supplier<Map<Long, String>> initiators) {
+        submit(new Deployment(WorkflowPolicyGenerator.EXECUTION_POLICY_PACKAGE,
+                () -> policyEvaluator.loadExecutionAcls(initiators.get()),
+                input -> false, true, 0));
+    }
+
+    /**
+     * Queue adding the ACL entry of a new execution
+     */
+    public void submitExecutionAcl(Long executionId, String initiator) {
+        submit(Deployment.acl(new AclChange(executionId, initiator),
+                input -> WorkflowPolicyGenerator.executionAllows(initiator, input.get("action"),
+                        input.get("username"))));
+    }
+
+    /**
+     * Queue removing the ACL entry of a deleted execution. Until it is
+     * removed, every action on the execution is denied.
+     */
+    public void submitExecutionAclRemoval(Long executionId) {
+        submit(Deployment.acl(new AclChange(executionId, null), input -> false));
+    }
+
+    /**
+     * Get the deployment state of a key. Keys without a queued or recently
+     * failed deployment are reported as deployed.
+     */
+    public State getState(String key) {
+        if (pending.containsKey(key)) {
+            return State.PENDING;
+        }
+        Long failedAt = failed.get(key);
+        return failedAt != null && System.nanoTime() - failedAt <= FAILED_RETENTION_NANOS
+                ? State.FAILED
+                : State.DEPLOYED;
+    }
+
+    /**
+     * Evaluate the allow rule for a key whose deployment is still pending,
+     * using the rules that are about to be deployed
+     *
+     * @return The decision, or empty if no deployment of the key is pending
+     */
+    public Optional<Boolean> evaluatePending(String key, Map<String, Object> input) {
+        Deployment deployment = pending.get(key);
+        return deployment == null ? Optional.empty() : Optional.of(deployment.pendingDecision().apply(input));
+    }
+
+    private void submit(Deployment deployment) {
+        pending.put(deployment.key(), deployment);
+        failed.remove(deployment.key());
+        queueLock.lock();
+        try {
+            // Re-inserting moves a coalesced key to the end, behind older keys
+            queued.remove(deployment.key());
+            queued.put(deployment.key(), deployment);
+            scheduleDrain(batchDelayMillis);
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private void scheduleDrain(long delayMillis) {
+        queueLock.lock();
+        try {
+            if (!drainScheduled) {
+                drainScheduled = true;
+                worker.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private void drain() {
+        List<Deployment> batch;
+        queueLock.lock();
+        try {
+            drainScheduled = false;
+            batch = new ArrayList<>(queued.values());
+            queued.clear();
+        } finally {
+            queueLock.unlock();
+        }
+
+        List<Deployment> aclChanges = new ArrayList<>();
+        for (Deployment deployment : batch) {
+            if (deployment.aclChange() != null) {
+                aclChanges.add(deployment);
+                continue;
+            }
+            Timer.Sample sample = metrics.start();
+            try {
+                deployment.action().run();
+                metrics.recordPolicyDeployment(sample, deployment.key(), WorkflowMetrics.OUTCOME_SUCCESS);
+                completed(deployment);
+            } catch (Exception e) {
+                metrics.recordPolicyDeployment(sample, deployment.key(), retryOrFail(deployment, e));
+            }
+        }
+        deployAclChanges(aclChanges);
+
+        if (!batch.isEmpty()) {
+            logger.debug("Deployed batch of {} policy changes", batch.size());
+        }
+    }
+
+    /**
+     * Send the execution ACL changes of a batch in one request. Keys are
+     * unique within a batch, so no two changes touch the same entry.
+     */
+    private void deployAclChanges(List<Deployment> aclChanges) {
+        if (aclChanges.isEmpty()) {
+            return;
+        }
+
+        Map<Long, String> initiators = new LinkedHashMap<>();
+        List<Long> removed = new ArrayList<>();
+        for (Deployment deployment : aclChanges) {
+            AclChange change = deployment.aclChange();
+            if (change.initiator() != null) {
+                initiators.put(change.executionId(), change.initiator());
+            } else {
+                removed.add(change.executionId());
+            }
+        }
+
+        Timer.Sample sample = metrics.start();
+        try {
+            policyEvaluator.updateExecutionAcls(initiators, removed);
+            metrics.recordPolicyDeployment(sample, WorkflowPolicyGenerator.EXECUTION_ACL_DOCUMENT,
+                    WorkflowMetrics.OUTCOME_SUCCESS);
+            aclChanges.forEach(this::completed);
+        } catch (Exception e) {
+            String outcome = "retry";
+            for (Deployment deployment : aclChanges) {
+                if ("failed".equals(retryOrFail(deployment, e))) {
+                    outcome = "failed";
+                }
+            }
+            metrics.recordPolicyDeployment(sample, WorkflowPolicyGenerator.EXECUTION_ACL_DOCUMENT, outcome);
+        }
+    }
+
+    private void completed(Deployment deployment) {
+        // Only clear the pending entry if no newer version was submitted meanwhile
+        pending.remove(deployment.key(), deployment);
+        invalidateDecisions(deployment);
+    }
+
+    private void invalidateDecisions(Deployment deployment) {
+        if (deployment.invalidatesAll()) {
+            decisionCache.invalidateAll();
+        } else {
+            decisionCache.invalidate(deployment.key());
+        }
+    }
+
+    /**
+     * Schedule a retry of a failed deployment, or give up after the last attempt
+     *
+     * @return The outcome to record, "retry" or "failed"
+     */
+    private String retryOrFail(Deployment deployment, Exception error) {
+        int attempt = deployment.attempts() + 1;
+        if (attempt >= maxAttempts) {
+            logger.error("Giving up deploying {} after {} attempts: {}", deployment.key(), attempt,
+                    error.getMessage());
+            if (pending.remove(deployment.key(), deployment)) {
+                markFailed(deployment.key());
+            }
+            invalidateDecisions(deployment);
+            return "failed";
+        }
+
+        logger.warn("Error deploying {}, retrying: {}", deployment.key(), error.getMessage());
+        Deployment retry = deployment.nextAttempt();
+        long backoffMillis = batchDelayMillis << Math.min(attempt, 10);
+        worker.schedule(() -> {
+            // A newer submission of the same key replaces the retry
+            if (pending.replace(retry.key(), deployment, retry)) {
+                queueLock.lock();
+                try {
+                    queued.putIfAbsent(retry.key(), retry);
+                    scheduleDrain(0);
+                } finally {
+                    queueLock.unlock();
+                }
+            }
+        }, backoffMillis, TimeUnit.MILLISECONDS);
+        return "retry";
+    }
+
+    /**
+     * Record that a key gave up, dropping expired entries and, once the limit
+     * is reached, the oldest one
+     */
+    private void markFailed(String key) {
+        long now = System.nanoTime();
+        failed.values().removeIf(failedAt -> now - failedAt > FAILED_RETENTION_NANOS);
+        if (failed.size() >= MAX_FAILED_KEYS) {
+            failed.entrySet().stream()
+                    .min(Map.Entry.comparingByValue())
+                    .ifPresent(oldest -> failed.remove(oldest.getKey(), oldest.getValue()));
+        }
+        failed.put(key, now);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdown();
+    }
+
+    /**
+     * A deployment of a key. Execution ACL changes carry an {@link AclChange}
+     * instead of an action and are sent together by {@link #deployAclChanges}.
+     */
+    private record Deployment(String key, Runnable action, AclChange aclChange,
+            Function<Map<String, Object>, Boolean> pendingDecision, boolean invalidatesAll, int attempts) {
+
+        Deployment(String key, Runnable action, Function<Map<String, Object>, Boolean> pendingDecision) {
+            this(key, action, null, pendingDecision, false, 0);
+        }
+
+        Deployment(String key, Runnable action, Function<Map<String, Object>, Boolean> pendingDecision,
+                boolean invalidatesAll, int attempts) {
+            this(key, action, null, pendingDecision, invalidatesAll, attempts);
+        }
+
+        static Deployment acl(AclChange change, Function<Map<String, Object>, Boolean> pendingDecision) {
+            return new Deployment(WorkflowPolicyGenerator.executionAclKey(change.executionId()), null, change,
+                    pendingDecision, false, 0);
+        }
+
+        Deployment nextAttempt() {
+            return new Deployment(key, action, aclChange, pendingDecision, invalidatesAll, attempts + 1);
+        }
+    }
+
+    /**
+     * An execution ACL entry to add, or to remove when the initiator is null
+     */
+    private record AclChange(Long executionId, String initiator) {
+    }
+}
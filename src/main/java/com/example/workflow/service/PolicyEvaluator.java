@@ -0,0 +1,83 @@
+package com.example.workflow.service;
+
+import com.example.workflow.model.CompiledWorkflowDefinition;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deploys and evaluates workflow policies.
+ *
+ * Policies are addressed by their package name, see
+ * {@link WorkflowPolicyGenerator#policyPackage(Long)} and
+ * {@link WorkflowPolicyGenerator#EXECUTION_POLICY_PACKAGE}. The
+ * implementation is selected with the workflow.policy.evaluator property:
+ * "opa" (default) evaluates against a remote OPA server, "in-process"
+ * evaluates the same rule model in memory.
+ */
+public interface PolicyEvaluator {
+
+    /**
+     * Deploy the policy of a workflow, replacing any previous version
+     */
+    void deployWorkflowPolicy(CompiledWorkflowDefinition definition);
+
+    /**
+     * Deploy the shared execution level policy that only lets the initiator
+     * upload, and add the given execution ACL entries that are missing.
+     * Existing entries are kept, so a load never drops an entry that another
+     * instance added after the initiators were read.
+     *
+     * @param initiators The initiator of each execution, by execution id
+     */
+    void loadExecutionAcls(Map<Long, String> initiators);
+
+    /**
+     * Add, replace and remove execution ACL entries in a single change.
+     * Removing an entry that does not exist is not an error.
+     *
+     * @param initiators The initiator of each added or replaced entry, by execution id
+     * @param removed    The deleted executions whose entries are removed
+     */
+    void updateExecutionAcls(Map<Long, String> initiators, Collection<Long> removed);
+
+    /**
+     * Evaluate the allow rule of a policy package
+     *
+     * @param policyPackage The policy package
+     * @param input         The policy input
+     * @return Whether the input is allowed
+     * @throws RuntimeException if the policy cannot be evaluated
+     */
+    boolean evaluateAllow(String policyPackage, Map<String, Object> input);
+
+    /**
+     * Evaluate the allow rule of a policy package without blocking the caller.
+     * Implementations that evaluate locally run the synchronous variant.
+     */
+    default Mono<Boolean> evaluateAllowAsync(String policyPackage, Map<String, Object> input) {
+        return Mono.fromCallable(() -> evaluateAllow(policyPackage, input));
+    }
+
+    /**
+     * Evaluate which of the given actions any of the given roles may perform
+     * on a workflow
+     *
+     * @return The allowed actions, or null if the deployed policy does not
+     *         support batch evaluation
+     * @throws RuntimeException if the policy cannot be evaluated
+     */
+    Set<String> evaluateAllowedActions(Long workflowId, Collection<String> actions, Collection<String> roles);
+
+    /**
+     * Evaluate allowed actions without blocking the caller. Completes empty if
+     * the deployed policy does not support batch evaluation.
+     */
+    default Mono<Set<String>> evaluateAllowedActionsAsync(Long workflowId, Collection<String> actions,
+            Collection<String> roles) {
+        return Mono.fromCallable(() -> evaluateAllowedActions(workflowId, actions, roles));
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.workflow.service;
+
+import com.example.workflow.model.CompiledWorkflowDefinition;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Policy evaluator that deploys Rego policies to and queries a remote OPA
+ * server through its REST API.
+ *
+ * Calls use a pooled Reactor Netty client with connect and response timeouts,
+ * a timeout per attempt, a bounded number of retries for transient failures,
+ * a deadline for the whole call including retries and a circuit breaker, so a
+ * slow or unavailable OPA fails fast instead of holding request threads.
+ * Deployments are attempted once per call and bypass the circuit breaker,
+ * since {@link PolicyDeploymentQueue} already retries them with backoff and a
+ * failing deployment must not deny the authorization checks of the instance.
+ */
+@Service
+@ConditionalOnProperty(name = "workflow.policy.evaluator", havingValue = "opa", matchIfMissing = true)
+public class RemoteOpaPolicyEvaluator implements PolicyEvaluator {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteOpaPolicyEvaluator.class);
+
+    private static final Duration RETRY_BACKOFF = Duration.ofMillis(50);
+
+    private static final MediaType JSON_PATCH = MediaType.valueOf("application/json-patch+json");
+
+    private final WebClient opaWebClient;
+    private final Duration requestTimeout;
+    private final Duration callDeadline;
+    private final int maxRetries;
+    private final OpaCircuitBreaker circuitBreaker;
+
+    public RemoteOpaPolicyEvaluator(@Value("${opa.url}") String opaUrl,
+            @Value("${opa.client.max-connections:50}") int maxConnections,
+            @Value("${opa.client.max-pending-acquires:1000}") int maxPendingAcquires,
+            @Value("${opa.client.connect-timeout:500ms}") Duration connectTimeout,
+            @Value("${opa.client.request-timeout:700ms}") Duration requestTimeout,
+            @Value("${opa.client.call-deadline:2s}") Duration callDeadline,
+            @Value("${opa.client.max-retries:2}") int maxRetries,
+            @Value("${opa.client.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${opa.client.circuit-breaker.open-duration:30s}") Duration openDuration) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("opa")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxPendingAcquires)
+                .pendingAcquireTimeout(requestTimeout)
+                .maxIdleTime(Duration.ofSeconds(30))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(requestTimeout);
+
+        this.opaWebClient = WebClient.builder()
+                .baseUrl(opaUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        this.requestTimeout = requestTimeout;
+        this.callDeadline = callDeadline;
+        this.maxRetries = maxRetries;
+        this.circuitBreaker = new OpaCircuitBreaker(failureThreshold, openDuration, this::isTransient);
+    }
+
+    @Override
+    public void deployWorkflowPolicy(CompiledWorkflowDefinition definition) {
+        String policyPackage = WorkflowPolicyGenerator.policyPackage(definition.getWorkflowId());
+        String policyContent = WorkflowPolicyGenerator.generate(definition);
+        logger.info("Deploying policy {}", policyPackage);
+        logger.debug("Policy {}:\n{}", policyPackage, policyContent);
+        putPolicy(policyPackage, policyContent);
+    }
+
+    /**
+     * Deploys the shared execution policy, creates the execution ACL document
+     * if it does not exist, patches in the entries it is missing and removes
+     * the per-execution policy modules deployed by earlier versions
+     */
+    @Override
+    public void loadExecutionAcls(Map<Long, String> initiators) {
+        putPolicy(WorkflowPolicyGenerator.EXECUTION_POLICY_PACKAGE, WorkflowPolicyGenerator.generateExecutionPolicy());
+
+        // Only creates the document; another instance may already have filled it
+        deploy(opaWebClient.put()
+                .uri("/v1/data/" + WorkflowPolicyGenerator.EXECUTION_ACL_DOCUMENT)
+                .header("If-None-Match", "*")
+                .bodyValue(Map.of())
+                .retrieve()
+                .toBodilessEntity())
+                .block();
+
+        JsonNode existing = deploy(opaWebClient.get()
+                .uri("/v1/data/" + WorkflowPolicyGenerator.EXECUTION_ACL_DOCUMENT)
+                .retrieve()
+                .bodyToMono(JsonNode.class))
+                .map(response -> response.path("result"))
+                .block();
+        Map<Long, String> missing = new HashMap<>();
+        initiators.forEach((executionId, initiator) -> {
+            if (existing == null || !existing.has(executionId.toString())) {
+                missing.put(executionId, initiator);
+            }
+        });
+        updateExecutionAcls(missing, List.of());
+        logger.info("Added {} missing execution ACL entries of {}", missing.size(), initiators.size());
+
+        deleteLegacyExecutionPolicies();
+    }
+
+    /**
+     * Sends all changes as one JSON Patch of the execution ACL document, which
+     * OPA applies atomically
+     */
+    @Override
+    public void updateExecutionAcls(Map<Long, String> initiators, Collection<Long> removed) {
+        List<Map<String, Object>> patch = new ArrayList<>();
+        initiators.forEach((executionId, initiator) -> patch.add(Map.of("op", "add", "path", "/" + executionId,
+                "value", WorkflowPolicyGenerator.executionAclEntry(initiator))));
+        for (Long executionId : removed) {
+            // Removing a missing path fails the whole patch; adding it first
+            // makes the removal of an already absent entry a no-op
+            patch.add(Map.of("op", "add", "path", "/" + executionId, "value", Map.of()));
+            patch.add(Map.of("op", "remove", "path", "/" + executionId));
+        }
+        if (patch.isEmpty()) {
+            return;
+        }
+
+        deploy(opaWebClient.patch()
+                .uri("/v1/data/" + WorkflowPolicyGenerator.EXECUTION_ACL_DOCUMENT)
+                .contentType(JSON_PATCH)
+                .bodyValue(patch)
+                .retrieve()
+                .toBodilessEntity())
+                .block();
+    }
+
+    @Override
+    public boolean evaluateAllow(String policyPackage, Map<String, Object> input) {
+        return Boolean.TRUE.equals(evaluateAllowAsync(policyPackage, input).block());
+    }
+
+    @Override
+    public Mono<Boolean> evaluateAllowAsync(String policyPackage, Map<String, Object> input) {
+        return call(opaWebClient.post()
+                .uri("/v1/data/" + policyPackage + "/allow")
+                .bodyValue(Map.of("input", input))
+                .retrieve()
+                .bodyToMono(JsonNode.class))
+                .map(response -> response.path("result").asBoolean(false))
+                .defaultIfEmpty(false);
+    }
+
+    @Override
+    public Set<String> evaluateAllowedActions(Long workflowId, Collection<String> actions,
+            Collection<String> roles) {
+        return evaluateAllowedActionsAsync(workflowId, actions, roles).block();
+    }
+
+    @Override
+    public Mono<Set<String>> evaluateAllowedActionsAsync(Long workflowId, Collection<String> actions,
+            Collection<String> roles) {
+        Map<String, Object> input = new HashMap<>();
+        input.put("actions", List.copyOf(actions));
+        input.put("roles", List.copyOf(roles));
+
+        return call(opaWebClient.post()
+                .uri("/v1/data/" + WorkflowPolicyGenerator.policyPackage(workflowId) + "/allowed_actions")
+                .bodyValue(Map.of("input", input))
+                .retrieve()
+                .bodyToMono(JsonNode.class))
+                // A policy that predates allowed_actions has no result; complete empty
+                .filter(response -> response.has("result"))
+                .map(response -> {
+                    Set<String> allowedActions = new HashSet<>();
+                    response.path("result").forEach(action -> allowedActions.add(action.asText()));
+                    return allowedActions;
+                });
+    }
+
+    private void putPolicy(String policyPackage, String policyContent) {
+        deploy(opaWebClient.put()
+                .uri("/v1/policies/" + policyPackage)
+                .header("Content-Type", "text/plain")
+                .bodyValue(policyContent)
+                .retrieve()
+                .bodyToMono(String.class))
+                .doOnError(error -> {
+                    logger.warn("Error deploying policy {}: {}", policyPackage, error.getMessage());
+                })
+                .block();
+    }
+
+    private void deleteLegacyExecutionPolicies() {
+        JsonNode policies = deploy(opaWebClient.get()
+                .uri("/v1/policies")
+                .retrieve()
+                .bodyToMono(JsonNode.class))
+                .block();
+        if (policies == null) {
+            return;
+        }
+
+        int deleted = 0;
+        for (JsonNode policy : policies.path("result")) {
+            String policyId = policy.path("id").asText();
+            if (WorkflowPolicyGenerator.isLegacyExecutionPackage(policyId)) {
+                deploy(opaWebClient.delete()
+                        .uri("/v1/policies/" + policyId)
+                        .retrieve()
+                        .toBodilessEntity()
+                        .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty()))
+                        .block();
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            logger.info("Removed {} legacy per-execution policies", deleted);
+        }
+    }
+
+    /**
+     * Apply the per-attempt timeout, retries, the deadline of the whole call
+     * and the circuit breaker to an OPA decision request. All OPA calls made
+     * here are idempotent, so retrying is safe.
+     */
+    private <T> Mono<T> call(Mono<T> request) {
+        return circuitBreaker.protect(request
+                .timeout(requestTimeout)
+                .retryWhen(Retry.backoff(maxRetries, RETRY_BACKOFF)
+                        .filter(this::isTransient)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .timeout(callDeadline));
+    }
+
+    /**
+     * Apply the per-attempt timeout to a request made by the deployment queue,
+     * which retries failed deployments itself
+     */
+    private <T> Mono<T> deploy(Mono<T> request) {
+        return request.timeout(requestTimeout);
+    }
+
+    private boolean isTransient(Throwable error) {
+        return error instanceof TimeoutException
+                || error instanceof WebClientRequestException
+                || (error instanceof WebClientResponseException responseError
+                        && responseError.getStatusCode().is5xxServerError());
+    }
+}
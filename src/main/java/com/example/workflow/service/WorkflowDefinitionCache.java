@@ -0,0 +1,113 @@
+package com.example.workflow.service;
+
+import com.example.workflow.model.CompiledWorkflowDefinition;
+import com.example.workflow.model.WorkflowDefinition;
+import com.example.workflow.model.WorkflowJsonEntity;
+
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, per-workflow cache of compiled workflow definitions.
+ *
+ * Entries are keyed by workflow id and checked against the content version of
+ * the entity passed in, so an execution pointing at an edited workflow never
+ * sees the old definition even if invalidation was missed. Saving a workflow
+ * should still call {@link #invalidate(Long)} to release the stale entry.
+ */
+@Service
+public class WorkflowDefinitionCache {
+
+    private final Map<Long, CompiledWorkflowDefinition> cache;
+    private final WorkflowMetrics metrics;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public WorkflowDefinitionCache(@Value("${workflow.definition-cache.max-size:256}") int maxSize,
+            WorkflowMetrics metrics) {
+        this.metrics = metrics;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CompiledWorkflowDefinition> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the compiled definition for a workflow entity, compiling it on a miss
+     * or when the cached entry is for a different content version.
+     *
+     * @param entity The workflow JSON entity
+     * @return The compiled definition
+     * @throws RuntimeException if the workflow data cannot be parsed
+     */
+    public CompiledWorkflowDefinition getCompiled(WorkflowJsonEntity entity) {
+        if (entity.getId() == null) {
+            return compile(entity);
+        }
+
+        long version = CompiledWorkflowDefinition.contentVersionOf(entity);
+        lock.lock();
+        try {
+            CompiledWorkflowDefinition cached = cache.get(entity.getId());
+            if (cached != null && cached.getContentVersion() == version) {
+                return cached;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Compile outside the lock; a concurrent miss just compiles twice
+        CompiledWorkflowDefinition compiled = compile(entity);
+        lock.lock();
+        try {
+            cache.put(entity.getId(), compiled);
+        } finally {
+            lock.unlock();
+        }
+        return compiled;
+    }
+
+    private CompiledWorkflowDefinition compile(WorkflowJsonEntity entity) {
+        Timer.Sample sample = metrics.start();
+        try {
+            CompiledWorkflowDefinition compiled = CompiledWorkflowDefinition.compile(entity);
+            metrics.recordDefinitionCompile(sample, WorkflowMetrics.OUTCOME_SUCCESS);
+            return compiled;
+        } catch (RuntimeException e) {
+            metrics.recordDefinitionCompile(sample, WorkflowMetrics.OUTCOME_ERROR);
+            throw e;
+        }
+    }
+
+    /**
+     * Get a workflow definition with fresh node instances backed by the cached
+     * compiled definition
+     *
+     * @param entity The workflow JSON entity
+     * @return The workflow definition
+     */
+    public WorkflowDefinition getDefinition(WorkflowJsonEntity entity) {
+        return new WorkflowDefinition(entity, getCompiled(entity));
+    }
+
+    /**
+     * Drop the cached definition of a workflow, e.g. after it was saved
+     */
+    public void invalidate(Long workflowId) {
+        if (workflowId == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            cache.remove(workflowId);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
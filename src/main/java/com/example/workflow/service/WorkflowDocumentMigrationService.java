@@ -0,0 +1,70 @@
+package com.example.workflow.service;
+
+import com.example.workflow.model.WorkflowJsonEntity;
+import com.example.workflow.repository.WorkflowJsonRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Fills the metadata columns of workflows saved before they existed.
+ *
+ * The stored JSON is left as written: both the document shape and bare node
+ * arrays are read by {@link com.example.workflow.model.WorkflowDocumentDeserializer},
+ * and rewriting the data would drop node fields the model does not know.
+ * Only workflows without metadata are read, so once every workflow has been
+ * backfilled a startup finds nothing to do.
+ */
+@Service
+public class WorkflowDocumentMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowDocumentMigrationService.class);
+
+    private static final int BATCH_SIZE = 200;
+
+    @Autowired
+    private WorkflowJsonRepository workflowJsonRepository;
+
+    /**
+     * Extract the metadata columns of every workflow that lacks them. Each
+     * row is updated only if its JSON is unchanged since it was read, so a
+     * workflow saved meanwhile keeps the metadata of its new JSON. Workflows
+     * whose JSON cannot be parsed are reported and left unchanged.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillWorkflowMetadata() {
+        long afterId = 0L;
+        int backfilled = 0;
+        int failed = 0;
+        List<WorkflowJsonEntity> batch;
+        do {
+            batch = workflowJsonRepository.findByNodeCountIsNullAndIdGreaterThanOrderByIdAsc(afterId,
+                    PageRequest.of(0, BATCH_SIZE));
+            for (WorkflowJsonEntity workflow : batch) {
+                afterId = workflow.getId();
+                if (workflow.getData() == null) {
+                    continue;
+                }
+                workflow.refreshMetadata();
+                if (workflow.getNodeCount() == null) {
+                    failed++;
+                    continue;
+                }
+                backfilled += workflowJsonRepository.backfillMetadata(workflow.getId(), workflow.getData(),
+                        workflow.getDocumentType(), workflow.getNodeCount(), workflow.getNodeTypes(),
+                        workflow.getRequiredRoles());
+            }
+        } while (batch.size() == BATCH_SIZE);
+
+        if (backfilled > 0 || failed > 0) {
+            logger.info("Backfilled metadata of {} workflows, {} could not be parsed", backfilled, failed);
+        }
+    }
+}
@@ -1,17 +1,32 @@
 package com.example.workflow.service;
 
-import com.example.workflow.components.nodes.WorkflowNode;
+import com.example.workflow.config.JsonMappers;
+import com.example.workflow.config.LogContext;
 import com.example.workflow.entity.OrganizationEntity;
+import com.example.workflow.model.CompiledWorkflowDefinition;
+import com.example.workflow.model.ExecutionEventType;
+import com.example.workflow.model.ExecutionProgressEvent;
+import com.example.workflow.model.NodeStatus;
 import com.example.workflow.model.WorkflowDefinition;
 import com.example.workflow.model.WorkflowExecutionEntity;
+import com.example.workflow.model.WorkflowExecutionEventEntity;
 import com.example.workflow.repository.WorkflowExecutionRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -29,10 +44,27 @@ public class WorkflowExecutionEngine {
     @Autowired
     private WorkflowOPAService opaService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private WorkflowDefinitionCache definitionCache;
+
+    @Autowired
+    private DocumentStorageService documentStorageService;
+
+    @Autowired
+    private ExecutionEventService eventService;
+
+    @Autowired
+    private WorkflowMetrics metrics;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JsonMappers jsonMappers;
 
     /**
-     * Start a new workflow execution
+     * Start a new workflow execution. Once it is committed, the execution ACL
+     * entry that restricts uploads to the initiator is queued for deployment.
      * 
      * @param definition The workflow definition
      * @param username   The user starting the execution
@@ -40,6 +72,23 @@ public class WorkflowExecutionEngine {
      */
     @Transactional
     public WorkflowExecutionEntity startExecution(WorkflowDefinition definition, String username) {
+        Timer.Sample sample = metrics.start();
+        try (LogContext.Scope logScope = LogContext.put(LogContext.WORKFLOW_ID, definition.getEntity().getId())) {
+            WorkflowExecutionEntity saved = createExecution(definition, username);
+
+            // Checks made before the entry reaches the policy engine are answered locally
+            Long executionId = saved.getId();
+            afterCommit(() -> opaService.deployExecutionAcl(executionId, username));
+
+            metrics.recordExecutionStart(sample, WorkflowMetrics.OUTCOME_SUCCESS);
+            return saved;
+        } catch (RuntimeException e) {
+            metrics.recordExecutionStart(sample, WorkflowMetrics.OUTCOME_ERROR);
+            throw e;
+        }
+    }
+
+    private WorkflowExecutionEntity createExecution(WorkflowDefinition definition, String username) {
         WorkflowExecutionEntity execution = new WorkflowExecutionEntity();
         execution.setWorkflow(definition.getEntity());
         execution.setStatus("In Progress");
@@ -49,21 +98,39 @@ public class WorkflowExecutionEngine {
         // Set organization from the workflow's organization
         execution.setOrganization(definition.getEntity().getOrganization());
 
+        // Denormalize the current node so visibility can be queried in SQL
+        CompiledWorkflowDefinition compiled = definition.getCompiled() != null
+                ? definition.getCompiled()
+                : definitionCache.getCompiled(definition.getEntity());
+        execution.updateCurrentNodeColumns(compiled);
+
         // Initialize node statuses
-        Map<String, String> nodeStatuses = new HashMap<>();
-        for (int i = 0; i < definition.getNodeCount(); i++) {
-            WorkflowNode node = definition.getNodeAt(i);
-            nodeStatuses.put(node.getName(), i == 0 ? "In Progress" : "Pending");
+        NodeStatus[] nodeStatuses = new NodeStatus[compiled.getNodeCount()];
+        Arrays.fill(nodeStatuses, NodeStatus.PENDING);
+        if (nodeStatuses.length > 0) {
+            nodeStatuses[0] = NodeStatus.IN_PROGRESS;
         }
+        execution.setNodeStatusArray(nodeStatuses);
 
         try {
-            execution.setNodeStatuses(objectMapper.writeValueAsString(nodeStatuses));
-            execution.setWorkflowData(objectMapper.writeValueAsString(new HashMap<>()));
+            execution.setWorkflowData(jsonMappers.writer().writeValueAsString(new HashMap<>()));
         } catch (Exception e) {
             throw new RuntimeException("Error initializing workflow execution", e);
         }
 
-        return executionRepository.save(execution);
+        int sequence = execution.nextEventSequence();
+        WorkflowExecutionEntity saved = executionRepository.save(execution);
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("toNodeIndex", 0);
+        payload.put("status", saved.getStatus());
+        payload.put("nodeStatuses", changedNodeStatuses(compiled, new NodeStatus[0], nodeStatuses));
+        WorkflowExecutionEventEntity event = eventService.append(saved.getId(), sequence,
+                ExecutionEventType.STARTED, 0, compiled.getNodeCount() > 0 ? compiled.getNodeAt(0).getName() : null,
+                payload);
+        publishProgress(saved, event, nodeStatuses);
+
+        return saved;
     }
 
     /**
@@ -98,13 +165,14 @@ public class WorkflowExecutionEngine {
         context.put("currentNodeIndex", execution.getCurrentNodeIndex());
         context.put("status", execution.getStatus());
 
-        // Add document info
-        context.put("uploadedDocument", execution.getUploadedDocument());
+        // Add document info; nodes stream the content through the document service
+        context.put("documentId", execution.getDocumentId());
         context.put("uploadedFileName", execution.getUploadedFileName());
         context.put("mimeType", execution.getMimeType());
 
         // Add services
         context.put("opaService", opaService);
+        context.put("documentService", documentStorageService);
         context.put("workflowExecutionEngine", this);
 
         // Add workflow data
@@ -125,54 +193,63 @@ public class WorkflowExecutionEngine {
     }
 
     /**
-     * Advance a workflow to the next node based on the execution context
+     * Advance a workflow to the next node based on the execution context.
+     *
+     * The execution is only written if it still has the version it was read
+     * with, so when two users act on the same node at once the second one
+     * gets an {@link ExecutionConflictException} instead of overwriting the
+     * first.
      * 
-     * @param execution The workflow execution to advance
+     * @param execution The workflow execution to advance, as read by the caller
      * @param context   The execution context containing workflow state
      * @return The updated workflow execution
+     * @throws ExecutionConflictException if the execution was changed since it was read
      */
     @Transactional
     public WorkflowExecutionEntity advanceWorkflow(WorkflowExecutionEntity execution, Map<String, Object> context) {
         // Check if we should advance the workflow
         if (context.containsKey("advanceWorkflow") && (boolean) context.get("advanceWorkflow")) {
-            try {
-                // Get workflow definition
-                WorkflowDefinition definition = new WorkflowDefinition(execution.getWorkflow());
+            Timer.Sample sample = metrics.start();
+            String nodeType = null;
+            try (LogContext.Scope logScope = LogContext.execution(execution.getWorkflow().getId(),
+                    execution.getId())) {
+                // Get compiled workflow definition
+                CompiledWorkflowDefinition definition = definitionCache.getCompiled(execution.getWorkflow());
 
                 // Get current node
                 int currentNodeIndex = execution.getCurrentNodeIndex();
-                WorkflowNode currentNode = definition.getNodeAt(currentNodeIndex);
+                CompiledWorkflowDefinition.NodeSpec currentNode = definition.getNodeAt(currentNodeIndex);
+                nodeType = currentNode != null ? currentNode.getType() : null;
 
                 // Update node statuses
-                Map<String, String> nodeStatuses = execution.getNodeStatusesAsMap();
+                NodeStatus[] nodeStatuses = execution.getNodeStatusArray(definition);
+                NodeStatus nodeStatus = NodeStatus.fromLabel((String) context.get("nodeStatus"), NodeStatus.COMPLETED);
+
+                // State before the step, to record the step as a delta in the event log
+                NodeStatus[] previousNodeStatuses = nodeStatuses.clone();
+                Map<String, Object> previousWorkflowData = execution.getWorkflowDataAsMap();
+                String statusBefore = execution.getStatus();
+                Long documentIdBefore = execution.getDocumentId();
+                boolean returnToUpload = context.containsKey("returnToUpload")
+                        && (boolean) context.get("returnToUpload");
 
                 // Check if we need to return to upload node
-                if (context.containsKey("returnToUpload") && (boolean) context.get("returnToUpload")) {
-                    // Find the upload node
-                    for (int i = 0; i < definition.getNodeCount(); i++) {
-                        WorkflowNode node = definition.getNodeAt(i);
-                        if ("Upload".equals(node.getType())) {
-                            // Update current node status
-                            if (currentNode != null) {
-                                String status = context.containsKey("nodeStatus")
-                                        ? (String) context.get("nodeStatus")
-                                        : "Completed";
-                                nodeStatuses.put(currentNode.getName(), status);
-                            }
-
-                            // Set the upload node as current
-                            execution.setCurrentNodeIndex(i);
-                            nodeStatuses.put(node.getName(), "In Progress");
-                            break;
+                if (returnToUpload) {
+                    int uploadNodeIndex = definition.getUploadNodeIndex();
+                    if (uploadNodeIndex >= 0) {
+                        // Update current node status
+                        if (currentNode != null) {
+                            nodeStatuses[currentNodeIndex] = nodeStatus;
                         }
+
+                        // Set the upload node as current
+                        execution.setCurrentNodeIndex(uploadNodeIndex);
+                        nodeStatuses[uploadNodeIndex] = NodeStatus.IN_PROGRESS;
                     }
                 } else {
                     // Normal advancement to next node
                     if (currentNode != null) {
-                        String status = context.containsKey("nodeStatus")
-                                ? (String) context.get("nodeStatus")
-                                : "Completed";
-                        nodeStatuses.put(currentNode.getName(), status);
+                        nodeStatuses[currentNodeIndex] = nodeStatus;
                     }
 
                     // Move to next node
@@ -180,19 +257,24 @@ public class WorkflowExecutionEngine {
 
                     // If there's a next node, mark it as in progress
                     if (currentNodeIndex + 1 < definition.getNodeCount()) {
-                        WorkflowNode nextNode = definition.getNodeAt(currentNodeIndex + 1);
-                        nodeStatuses.put(nextNode.getName(), "In Progress");
+                        nodeStatuses[currentNodeIndex + 1] = NodeStatus.IN_PROGRESS;
                     }
                 }
 
+                // Keep the denormalized current node columns in step with the index
+                execution.updateCurrentNodeColumns(definition);
+
                 // Update workflow status if specified
                 if (context.containsKey("workflowStatus")) {
                     execution.setStatus((String) context.get("workflowStatus"));
                 }
 
-                // Update document if uploaded
-                if (context.containsKey("uploadedDocument")) {
-                    execution.setUploadedDocument((byte[]) context.get("uploadedDocument"));
+                // Point the execution at a newly uploaded document
+                Long previousDocumentId = null;
+                Long documentId = (Long) context.get("documentId");
+                if (documentId != null && !documentId.equals(execution.getDocumentId())) {
+                    previousDocumentId = execution.getDocumentId();
+                    execution.setDocumentId(documentId);
                 }
 
                 if (context.containsKey("uploadedFileName")) {
@@ -206,7 +288,7 @@ public class WorkflowExecutionEngine {
                 // Update workflow data
                 Map<String, Object> workflowData = (Map<String, Object>) context.get("workflowData");
                 if (workflowData != null) {
-                    execution.setWorkflowData(objectMapper.writeValueAsString(workflowData));
+                    execution.setWorkflowData(jsonMappers.writer().writeValueAsString(workflowData));
 
                     // Update review/approval fields
                     if (workflowData.containsKey("reviewDecision")) {
@@ -227,7 +309,7 @@ public class WorkflowExecutionEngine {
                 }
 
                 // Update node statuses
-                execution.setNodeStatuses(objectMapper.writeValueAsString(nodeStatuses));
+                execution.setNodeStatusArray(nodeStatuses);
 
                 // Check if workflow is complete
                 if (execution.getCurrentNodeIndex() >= definition.getNodeCount() &&
@@ -235,9 +317,40 @@ public class WorkflowExecutionEngine {
                     execution.setStatus("Completed");
                 }
 
-                // Save and return the updated execution
-                return executionRepository.save(execution);
+                // Compare-and-set: the update only matches the version the caller read
+                int sequence = execution.nextEventSequence();
+                WorkflowExecutionEntity saved = executionRepository.saveAndFlush(execution);
+
+                // Append the step to the event log
+                Map<String, Object> payload = new HashMap<>();
+                payload.put("fromNodeIndex", currentNodeIndex);
+                payload.put("toNodeIndex", saved.getCurrentNodeIndex());
+                payload.put("status", saved.getStatus());
+                payload.put("nodeStatuses", changedNodeStatuses(definition, previousNodeStatuses, nodeStatuses));
+                if (!Objects.equals(documentIdBefore, saved.getDocumentId())) {
+                    payload.put("documentId", saved.getDocumentId());
+                }
+                if (workflowData != null) {
+                    payload.put("changes", ExecutionEventService.changedEntries(previousWorkflowData, workflowData));
+                    payload.put("removed", ExecutionEventService.removedKeys(previousWorkflowData, workflowData));
+                }
+                ExecutionEventType eventType = eventType(currentNode, returnToUpload,
+                        nodeStatus == NodeStatus.REJECTED
+                                || (!"Rejected".equals(statusBefore) && "Rejected".equals(saved.getStatus())));
+                WorkflowExecutionEventEntity event = eventService.append(saved.getId(), sequence, eventType,
+                        currentNodeIndex, currentNode != null ? currentNode.getName() : null, payload);
+                publishProgress(saved, event, nodeStatuses);
+
+                // Drop the replaced document once the advance is known to win
+                documentStorageService.delete(previousDocumentId);
+
+                metrics.recordAdvance(sample, nodeType, eventType.name().toLowerCase());
+                return saved;
+            } catch (ObjectOptimisticLockingFailureException e) {
+                metrics.recordAdvance(sample, nodeType, WorkflowMetrics.OUTCOME_CONFLICT);
+                throw new ExecutionConflictException(execution.getId(), e);
             } catch (Exception e) {
+                metrics.recordAdvance(sample, nodeType, WorkflowMetrics.OUTCOME_ERROR);
                 throw new RuntimeException("Error advancing workflow", e);
             }
         }
@@ -245,4 +358,81 @@ public class WorkflowExecutionEngine {
         // If no advancement needed, just return the current execution
         return execution;
     }
+
+    /**
+     * Run an action once the current transaction commits, or right away
+     * without a transaction
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Publish a step to the {@link ExecutionEventBus}, which delivers it to
+     * subscribed views once the transaction commits
+     */
+    private void publishProgress(WorkflowExecutionEntity execution, WorkflowExecutionEventEntity event,
+            NodeStatus[] nodeStatuses) {
+        eventPublisher.publishEvent(new ExecutionProgressEvent(execution.getId(), event.getSequence(),
+                event.getEventType(), execution.getCurrentNodeIndex(), execution.getStatus(),
+                List.of(nodeStatuses), event.getActor()));
+    }
+
+    /**
+     * Collect the node statuses that differ between two status arrays for the
+     * event log. Changes are keyed by node position, like node_status_codes;
+     * the name is only a label, since node names need not be unique.
+     */
+    private List<Map<String, Object>> changedNodeStatuses(CompiledWorkflowDefinition definition,
+            NodeStatus[] before, NodeStatus[] after) {
+        List<Map<String, Object>> changes = new ArrayList<>();
+        for (int i = 0; i < after.length; i++) {
+            if (i >= before.length || before[i] != after[i]) {
+                Map<String, Object> change = new LinkedHashMap<>();
+                change.put("index", i);
+                change.put("name", definition.getNodeAt(i).getName());
+                change.put("status", after[i].getLabel());
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Classify a step for the event log by the node it completed and what the
+     * step itself did, not by the state the execution is left in
+     *
+     * @param rejected Whether this step rejected the node or the execution
+     */
+    private ExecutionEventType eventType(CompiledWorkflowDefinition.NodeSpec node, boolean returnToUpload,
+            boolean rejected) {
+        if (rejected) {
+            return ExecutionEventType.REJECTED;
+        }
+        if (returnToUpload) {
+            return ExecutionEventType.RETURNED;
+        }
+        if (node == null) {
+            return ExecutionEventType.NODE_COMPLETED;
+        }
+        switch (node.getType()) {
+            case "Upload":
+                return ExecutionEventType.UPLOADED;
+            case "Document Review":
+                return ExecutionEventType.REVIEWED;
+            case "Approve/Reject":
+                return ExecutionEventType.APPROVED;
+            default:
+                return ExecutionEventType.NODE_COMPLETED;
+        }
+    }
 }
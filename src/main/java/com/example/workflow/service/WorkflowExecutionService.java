@@ -1,31 +1,60 @@
 package com.example.workflow.service;
 
 import com.example.workflow.entity.OrganizationEntity;
-import com.example.workflow.model.WorkflowDefinition;
+import com.example.workflow.model.CompiledWorkflowDefinition;
 import com.example.workflow.model.WorkflowExecutionEntity;
 import com.example.workflow.model.WorkflowJsonEntity;
+import com.example.workflow.repository.DataMigrationRepository;
 import com.example.workflow.repository.WorkflowExecutionRepository;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class WorkflowExecutionService {
 
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowExecutionService.class);
+
     private final WorkflowExecutionRepository workflowExecutionRepository;
 
     @Autowired
     private OrganizationService organizationService;
 
+    @Autowired
+    private WorkflowDefinitionCache definitionCache;
+
+    @Autowired
+    private DocumentStorageService documentStorageService;
+
+    @Autowired
+    private DataMigrationRepository dataMigrationRepository;
+
+    @Autowired
+    private WorkflowOPAService workflowOPAService;
+
+    @Autowired
+    private ExecutionEventService executionEventService;
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    /** Marker of the one-off recompute of the current node columns */
+    private static final String CURRENT_NODE_COLUMNS_MIGRATION = "execution-current-node-columns";
+
     public WorkflowExecutionService(WorkflowExecutionRepository workflowExecutionRepository) {
         this.workflowExecutionRepository = workflowExecutionRepository;
     }
@@ -40,7 +69,11 @@ public class WorkflowExecutionService {
             throw new RuntimeException("Execution not found or you don't have permission to delete it");
         }
 
-        workflowExecutionRepository.delete(executionOpt.get());
+        WorkflowExecutionEntity execution = executionOpt.get();
+        workflowExecutionRepository.delete(execution);
+        documentStorageService.delete(execution.getDocumentId());
+        executionEventService.deleteHistory(executionId);
+        workflowOPAService.removeExecutionAcl(executionId);
     }
 
     @Transactional
@@ -55,7 +88,9 @@ public class WorkflowExecutionService {
         WorkflowExecutionEntity execution = new WorkflowExecutionEntity();
         execution.setWorkflow(workflow);
         execution.setUploadedFileName(uploadedFileName);
-        execution.setUploadedDocument(document);
+        if (document != null) {
+            execution.setDocumentId(documentStorageService.store(document, uploadedFileName, mimeType));
+        }
         execution.setMimeType(mimeType);
         execution.setCreatedBy(createdBy);
         String documentType = extractDocumentTypeFromWorkflow(workflow);
@@ -81,125 +116,89 @@ public class WorkflowExecutionService {
 
     private void updateNodeTypeAndRequiredRole(WorkflowExecutionEntity execution) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            List<Map<String, Object>> nodes = mapper.readValue(
-                    execution.getWorkflow().getData(),
-                    new TypeReference<List<Map<String, Object>>>() {
-                    });
-
-            int currentNodeIndex = execution.getCurrentNodeIndex();
-            if (currentNodeIndex >= 0 && currentNodeIndex < nodes.size()) {
-                Map<String, Object> currentNode = nodes.get(currentNodeIndex);
-                String nodeType = (String) currentNode.get("type");
-                execution.setCurrentNodeType(nodeType);
-
-                // Extract required role based on node type
-                String requiredRole = null;
-
-                @SuppressWarnings("unchecked")
-                Map<String, Object> props = (Map<String, Object>) currentNode.get("props");
-                if (props != null) {
-                    if ("Document Review".equals(nodeType) || "Doc Review".equals(nodeType)) {
-                        requiredRole = (String) props.get("reviewerRole");
-                        System.out.println("Setting reviewer role to: " + requiredRole + " for node type: " + nodeType);
-                    } else if ("Approve/Reject".equals(nodeType) || "Approval".equals(nodeType)) {
-                        requiredRole = (String) props.get("Approver Role");
-                        System.out.println("Setting approver role to: " + requiredRole + " for node type: " + nodeType);
-                    }
-                }
+            execution.updateCurrentNodeColumns(definitionCache.getCompiled(execution.getWorkflow()));
+            logger.debug("Updated node type to {} and required role to {}", execution.getCurrentNodeType(),
+                    execution.getRequiredRole());
+        } catch (Exception e) {
+            logger.error("Error updating node type and required role of execution {}", execution.getId(), e);
+        }
+    }
 
-                execution.setRequiredRole(requiredRole);
-                System.out.println("Updated node type to: " + nodeType + " and required role to: " + requiredRole);
+    /**
+     * Recompute the current node type and required role of every execution
+     * that has not completed, once. Rows written before the engine maintained
+     * them on every advance may hold the values of the first node, or none, and
+     * the visibility query and access checks only trust these columns.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCurrentNodeColumns() {
+        if (dataMigrationRepository.existsById(CURRENT_NODE_COLUMNS_MIGRATION)) {
+            return;
+        }
+        long afterId = 0L;
+        int updated = 0;
+        List<WorkflowExecutionEntity> batch;
+        do {
+            batch = workflowExecutionRepository.findNotCompleted(afterId, PageRequest.of(0, BACKFILL_BATCH_SIZE));
+            List<WorkflowExecutionEntity> changed = new ArrayList<>();
+            for (WorkflowExecutionEntity execution : batch) {
+                afterId = execution.getId();
+                String nodeType = execution.getCurrentNodeType();
+                String requiredRole = execution.getRequiredRole();
+                updateNodeTypeAndRequiredRole(execution);
+                if (!Objects.equals(nodeType, execution.getCurrentNodeType())
+                        || !Objects.equals(requiredRole, execution.getRequiredRole())) {
+                    changed.add(execution);
+                }
             }
-        } catch (Exception e) {
-            // Log error
-            System.err.println("Error updating node type and required role: " + e.getMessage());
-            e.printStackTrace();
+            workflowExecutionRepository.saveAll(changed);
+            updated += changed.size();
+        } while (batch.size() == BACKFILL_BATCH_SIZE);
+
+        dataMigrationRepository.markApplied(CURRENT_NODE_COLUMNS_MIGRATION, LocalDateTime.now());
+        if (updated > 0) {
+            logger.info("Recomputed current node columns of {} workflow executions", updated);
         }
     }
 
     /**
-     * * Get workflow executions visible to a specific user based on their roles
+     * Convert node statuses stored as a JSON map by node name into status
+     * codes by node position
      */
-    public List<WorkflowExecutionEntity> getWorkflowExecutionsForUser(String username, List<String> userRoles) {
-        List<WorkflowExecutionEntity> allExecutions = workflowExecutionRepository.findAllByOrderByUpdatedAtDesc();
-
-        return allExecutions.stream()
-                .filter(execution -> {
-                    // Case 1: User created the workflow
-                    if (execution.getCreatedBy() != null && execution.getCreatedBy().equals(username)) {
-                        return true;
-                    }
-
-                    // Case 2: Check if the user has the required role for the current node
-                    try {
-                        ObjectMapper mapper = new ObjectMapper();
-
-                        // First parse the JSON as a Map
-                        Map<String, Object> workflowDataMap = mapper.readValue(
-                                execution.getWorkflow().getData(),
-                                new TypeReference<Map<String, Object>>() {
-                                });
-
-                        // Then extract the nodes list from the map
-                        List<Map<String, Object>> workflowNodes = (List<Map<String, Object>>) workflowDataMap
-                                .get("nodes");
-
-                        if (workflowNodes == null) {
-                            System.err.println("No nodes found in workflow data");
-                            return false;
-                        }
-
-                        int currentNodeIndex = execution.getCurrentNodeIndex();
-                        if (currentNodeIndex >= 0 && currentNodeIndex < workflowNodes.size()) {
-                            Map<String, Object> currentNode = workflowNodes.get(currentNodeIndex);
-                            String nodeType = (String) currentNode.get("type");
-
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> props = (Map<String, Object>) currentNode.get("props");
-
-                            if (props != null) {
-                                // For Document Review nodes
-                                if ("Document Review".equals(nodeType) || "Doc Review".equals(nodeType)) {
-                                    String reviewerRole = (String) props.get("reviewerRole");
-                                    if (reviewerRole != null && userRoles.contains(reviewerRole)) {
-                                        return true;
-                                    }
-                                }
-                                // For Approval nodes
-                                else if ("Approve/Reject".equals(nodeType) || "Approval".equals(nodeType)) {
-                                    String approverRole = (String) props.get("Approver Role");
-                                    if (approverRole != null && userRoles.contains(approverRole)) {
-                                        return true;
-                                    }
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        // Log error but don't fail the filter
-                        System.err.println("Error checking workflow roles: " + e.getMessage());
-                        e.printStackTrace(); // Add stack trace for better debugging
-                    }
-
-                    return false;
-                })
-                .collect(Collectors.toList());
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillNodeStatusCodes() {
+        long afterId = 0L;
+        int updated = 0;
+        List<WorkflowExecutionEntity> batch;
+        do {
+            batch = workflowExecutionRepository.findMissingNodeStatusCodes(afterId,
+                    PageRequest.of(0, BACKFILL_BATCH_SIZE));
+            for (WorkflowExecutionEntity execution : batch) {
+                afterId = execution.getId();
+                try {
+                    execution.setNodeStatusArray(
+                            execution.getNodeStatusArray(definitionCache.getCompiled(execution.getWorkflow())));
+                } catch (Exception e) {
+                    logger.warn("Error converting node statuses of execution {}: {}", execution.getId(),
+                            e.getMessage());
+                }
+            }
+            workflowExecutionRepository.saveAll(batch);
+            updated += batch.size();
+        } while (batch.size() == BACKFILL_BATCH_SIZE);
+
+        if (updated > 0) {
+            logger.info("Converted node statuses of {} workflow executions to status codes", updated);
+        }
     }
 
     private String extractDocumentTypeFromWorkflow(WorkflowJsonEntity workflow) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            List<Map<String, Object>> nodes = mapper.readValue(
-                    workflow.getData(),
-                    new TypeReference<List<Map<String, Object>>>() {
-                    });
-            for (Map<String, Object> node : nodes) {
-                if ("Upload".equals(node.get("type"))) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, String> props = (Map<String, String>) node.get("props");
-                    if (props != null && props.containsKey("documentType")) {
-                        return props.get("documentType");
-                    }
+            CompiledWorkflowDefinition definition = definitionCache.getCompiled(workflow);
+            for (int i = 0; i < definition.getNodeCount(); i++) {
+                CompiledWorkflowDefinition.NodeSpec node = definition.getNodeAt(i);
+                if ("Upload".equals(node.getType()) && node.getProperties().containsKey("documentType")) {
+                    return node.getProperties().get("documentType");
                 }
             }
         } catch (Exception e) {
@@ -208,55 +207,49 @@ public class WorkflowExecutionService {
         return "Unknown";
     }
 
-    @Transactional
-    public List<WorkflowExecutionEntity> getWorkflowExecutionsForUserAndOrganization(
-            String username, List<String> roles, OrganizationEntity organization) {
-
-        // Get all executions for the organization
-        List<WorkflowExecutionEntity> executions = workflowExecutionRepository
-                .findByOrganizationOrderByUpdatedAtDesc(organization);
-
-        // Filter by user permissions
-        return executions.stream()
-                .filter(execution -> {
-                    // User can see their own executions
-                    if (execution.getCreatedBy().equals(username)) {
-                        return true;
-                    }
-
-                    // Check if user has role required for current node
-                    try {
-                        WorkflowDefinition definition = new WorkflowDefinition(execution.getWorkflow());
-                        int currentNodeIndex = execution.getCurrentNodeIndex();
-
-                        if (currentNodeIndex >= 0 && currentNodeIndex < definition.getNodeCount()) {
-                            var currentNode = definition.getNodeAt(currentNodeIndex);
-                            String nodeType = currentNode.getType();
-                            Map<String, String> props = currentNode.getProperties();
-
-                            // For Document Review nodes
-                            if ("Document Review".equals(nodeType)) {
-                                String reviewerRole = props.getOrDefault("reviewerRole", "");
-                                if (!reviewerRole.isEmpty() && roles.contains(reviewerRole)) {
-                                    return true;
-                                }
-                            }
-                            // For Approval nodes
-                            else if ("Approve/Reject".equals(nodeType)) {
-                                String approverRole = props.getOrDefault("Approver Role", "");
-                                if (!approverRole.isEmpty() && roles.contains(approverRole)) {
-                                    return true;
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        // Log error but don't fail the check
-                        System.err.println("Error checking workflow roles: " + e.getMessage());
-                    }
-
-                    return false;
-                })
-                .collect(Collectors.toList());
+    /**
+     * Fetch one page of the executions visible to a user, narrowed by a
+     * free-text filter on file name, workflow name or status. Pages without an
+     * explicit sort are ordered by last update, newest first.
+     */
+    @Transactional(readOnly = true)
+    public List<WorkflowExecutionEntity> findVisibleExecutions(String username, List<String> roles,
+            OrganizationEntity organization, String filterText, Pageable pageable) {
+        if (pageable.getSort().isUnsorted()) {
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                    Sort.by(Sort.Direction.DESC, "updatedAt"));
+        }
+        return workflowExecutionRepository.findVisibleToUser(organization, username, rolesForQuery(roles),
+                filterPattern(filterText), pageable);
+    }
+
+    /**
+     * Count the executions returned by
+     * {@link #findVisibleExecutions(String, List, OrganizationEntity, String, Pageable)}
+     */
+    @Transactional(readOnly = true)
+    public long countVisibleExecutions(String username, List<String> roles, OrganizationEntity organization,
+            String filterText) {
+        return workflowExecutionRepository.countVisibleToUser(organization, username, rolesForQuery(roles),
+                filterPattern(filterText));
+    }
+
+    private String filterPattern(String filterText) {
+        if (filterText == null || filterText.isBlank()) {
+            return "";
+        }
+        // Match the text literally: escape the LIKE wildcards and the escape character
+        String text = filterText.trim().toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + text + "%";
+    }
+
+    private Collection<String> rolesForQuery(Collection<String> roles) {
+        // An empty IN list is not valid SQL on every database; required_role is
+        // never blank, so a blank placeholder simply matches nothing
+        return roles == null || roles.isEmpty() ? List.of("") : roles;
     }
 
 }
@@ -0,0 +1,150 @@
+package com.example.workflow.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Micrometer meters of the workflow engine, the OPA integration and document
+ * storage, exposed under /actuator/metrics and /actuator/prometheus.
+ *
+ * Tags only carry bounded values (node types, policy kinds, outcomes), never
+ * workflow, execution or user ids.
+ */
+@Component
+public class WorkflowMetrics {
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_CONFLICT = "conflict";
+    public static final String OUTCOME_ERROR = "error";
+
+    private final MeterRegistry registry;
+    private final Counter decisionCacheHits;
+    private final Counter decisionCacheMisses;
+    private final DistributionSummary uploadSizes;
+
+    public WorkflowMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.decisionCacheHits = Counter.builder("opa.decision.cache")
+                .description("Lookups in the OPA decision cache")
+                .tag("result", "hit")
+                .register(registry);
+        this.decisionCacheMisses = Counter.builder("opa.decision.cache")
+                .description("Lookups in the OPA decision cache")
+                .tag("result", "miss")
+                .register(registry);
+        this.uploadSizes = DistributionSummary.builder("workflow.document.upload.size")
+                .description("Size of uploaded documents")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Start timing an operation, to be passed to one of the record methods
+     */
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Record the start of a workflow execution
+     */
+    public void recordExecutionStart(Timer.Sample sample, String outcome) {
+        sample.stop(Timer.builder("workflow.execution.start")
+                .description("Time to start a workflow execution")
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    /**
+     * Record one advance of a workflow execution
+     *
+     * @param nodeType The type of the node that was completed, or "none" past the last node
+     * @param outcome  The event type of the step, or {@link #OUTCOME_CONFLICT} / {@link #OUTCOME_ERROR}
+     */
+    public void recordAdvance(Timer.Sample sample, String nodeType, String outcome) {
+        sample.stop(Timer.builder("workflow.execution.advance")
+                .description("Time to advance a workflow execution by one node")
+                .tag("node.type", nodeType != null ? nodeType : "none")
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    /**
+     * Record an OPA decision that was evaluated by the policy evaluator, i.e.
+     * not answered from the cache or a pending deployment
+     *
+     * @param policy  The kind of policy, see {@link #policyKind(String)}
+     * @param outcome "allow", "deny" or {@link #OUTCOME_ERROR}
+     */
+    public void recordOpaDecision(Timer.Sample sample, String policy, String outcome) {
+        sample.stop(Timer.builder("opa.decision")
+                .description("Latency of OPA policy evaluations")
+                .tag("policy", policy)
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    /**
+     * Record a lookup in the OPA decision cache
+     */
+    public void recordDecisionCacheLookup(boolean hit) {
+        (hit ? decisionCacheHits : decisionCacheMisses).increment();
+    }
+
+    /**
+     * Record one deployment attempt of a policy or ACL change
+     *
+     * @param key     The deployment key
+     * @param outcome {@link #OUTCOME_SUCCESS}, "retry" or "failed"
+     */
+    public void recordPolicyDeployment(Timer.Sample sample, String key, String outcome) {
+        sample.stop(Timer.builder("opa.policy.deployment")
+                .description("Time to deploy a policy or execution ACL change to OPA")
+                .tag("policy", policyKind(key))
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    /**
+     * Report the number of queued or in-flight policy deployments
+     */
+    public void monitorPendingDeployments(Map<String, ?> pending) {
+        registry.gaugeMapSize("opa.policy.deployment.pending", Tags.empty(), pending);
+    }
+
+    /**
+     * Record the size of an uploaded document
+     */
+    public void recordUploadSize(long bytes) {
+        uploadSizes.record(bytes);
+    }
+
+    /**
+     * Record the compilation of a workflow definition from its JSON
+     */
+    public void recordDefinitionCompile(Timer.Sample sample, String outcome) {
+        sample.stop(Timer.builder("workflow.definition.compile")
+                .description("Time to parse and compile a workflow definition")
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    /**
+     * Classify a policy package or deployment key without its ids
+     */
+    public static String policyKind(String key) {
+        if (key.startsWith(WorkflowPolicyGenerator.EXECUTION_ACL_DOCUMENT)) {
+            return "execution_acl";
+        }
+        if (key.equals(WorkflowPolicyGenerator.EXECUTION_POLICY_PACKAGE)) {
+            return "execution_policy";
+        }
+        return "workflow_policy";
+    }
+}
@@ -1,152 +1,260 @@
 package com.example.workflow.service;
 
 import com.example.workflow.entity.OrganizationEntity;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.workflow.model.CompiledWorkflowDefinition;
+import com.example.workflow.repository.WorkflowExecutionRepository;
 
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class WorkflowOPAService {
 
-    private final WebClient opaWebClient;
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowOPAService.class);
+
+    private final PolicyEvaluator policyEvaluator;
 
     @Autowired
     private OrganizationService organizationService;
 
-    public WorkflowOPAService(@Value("${opa.url}") String opaUrl) {
-        this.opaWebClient = WebClient.builder()
-                .baseUrl(opaUrl)
-                .build();
+    @Autowired
+    private OpaDecisionCache decisionCache;
+
+    @Autowired
+    private PolicyDeploymentQueue deploymentQueue;
+
+    @Autowired
+    private WorkflowExecutionRepository workflowExecutionRepository;
+
+    @Autowired
+    private WorkflowMetrics metrics;
+
+    public WorkflowOPAService(PolicyEvaluator policyEvaluator) {
+        this.policyEvaluator = policyEvaluator;
     }
 
     /**
-     * Deploys a generated policy for a given workflow.
+     * Queues the deployment of the generated policy for a given workflow.
      * The policy is deployed under a package name unique to the workflow (e.g.,
      * workflows_<workflowId>).
      */
-    public void deployWorkflowPolicy(Long workflowId, String policyContent) {
-        String policyPackage = "workflow_" + workflowId;
-        System.out.println("Deploying policy for " + policyPackage + ":\n" + policyContent);
+    public void deployWorkflowPolicy(CompiledWorkflowDefinition definition) {
+        deploymentQueue.submitWorkflowPolicy(definition);
+    }
 
-        try {
-            opaWebClient.put()
-                    .uri("/v1/policies/" + policyPackage)
-                    .header("Content-Type", "text/plain")
-                    .bodyValue(policyContent)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .doOnError(error -> {
-                        System.err.println("Error deploying policy: " + error.getMessage());
-                    })
-                    .block();
-        } catch (Exception e) {
-            System.err.println("Error deploying workflow policy: " + e.getMessage());
-            e.printStackTrace();
-        }
+    /**
+     * Queues the deployment of the shared execution policy and a bulk load of
+     * the initiators of all existing executions into the execution ACL.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadExecutionAcls() {
+        deploymentQueue.submitExecutionAcls(() -> {
+            Map<Long, String> initiators = new HashMap<>();
+            for (Object[] row : workflowExecutionRepository.findExecutionInitiators()) {
+                initiators.put((Long) row[0], (String) row[1]);
+            }
+            return initiators;
+        });
     }
 
     /**
-     * Deploys an upload-stage policy for a workflow execution.
-     * This policy is deployed under a package name that combines the workflow id
-     * and the execution id.
-     * Only the user that created the workflow execution (the initiator) is allowed
-     * to perform the upload action.
+     * Queues adding an execution to the execution ACL. Only the user that
+     * created the workflow execution (the initiator) is allowed to perform the
+     * upload action.
      */
-    public void deployWorkflowExecutionPolicy(Long workflowId, Long executionId, String username) {
-        String policyPackageName = "workflow_" + workflowId + "_" + executionId;
-        System.out.println("deploying execution-specific policy for " + policyPackageName);
-        // Create a policy that only allows the original creator to upload files
-        StringBuilder policy = new StringBuilder();
-        policy.append("package ").append(policyPackageName).append("\n\n");
-        policy.append("default allow = false\n\n");
-        policy.append("allow if {\n")
-                .append("    input.action == \"upload\"\n")
-                .append("    input.username == \"").append(username).append("\"\n")
-                .append("}\n");
-
-        System.out.println("Deploying execution-specific policy:\n" + policy);
-
-        opaWebClient.put()
-                .uri("/v1/policies/" + policyPackageName)
-                .header("Content-Type", "text/plain")
-                .bodyValue(policy.toString())
-                .retrieve()
-                .bodyToMono(String.class)
-                .doOnError(error -> {
-                    System.err.println("Error deploying execution policy: " + error.getMessage());
-                })
-                .block();
+    public void deployExecutionAcl(Long executionId, String username) {
+        deploymentQueue.submitExecutionAcl(executionId, username);
     }
 
     /**
-     * Checks whether an action is allowed using a given policy package.
-     * For instance, this is used for both the workflow-level policies and the
-     * execution (upload stage) policy.
-     * The method sends an input map that includes the action and a value for a
-     * field (such as username or role).
+     * Queues removing a deleted execution from the execution ACL
      */
-    public boolean isActionAllowed(String policyPackage, String action, String valueToCheck, String fieldName) {
+    public void removeExecutionAcl(Long executionId) {
+        deploymentQueue.submitExecutionAclRemoval(executionId);
+    }
+
+    /**
+     * Get the deployment state of the policy of a workflow
+     */
+    public PolicyDeploymentQueue.State getWorkflowPolicyState(Long workflowId) {
+        return deploymentQueue.getState(WorkflowPolicyGenerator.policyPackage(workflowId));
+    }
+
+    /**
+     * Get the deployment state of the execution ACL entry of an execution
+     */
+    public PolicyDeploymentQueue.State getExecutionAclState(Long executionId) {
+        return deploymentQueue.getState(WorkflowPolicyGenerator.executionAclKey(executionId));
+    }
+
+    /**
+     * Checks whether a user may upload documents to an execution, using the
+     * shared execution policy and the execution ACL.
+     */
+    public boolean isUploadAllowed(Long executionId, String username) {
+        return Boolean.TRUE.equals(isUploadAllowedAsync(executionId, username).block());
+    }
+
+    /**
+     * Non-blocking variant of {@link #isUploadAllowed(Long, String)}.
+     * Emits false if the policy cannot be evaluated.
+     */
+    public Mono<Boolean> isUploadAllowedAsync(Long executionId, String username) {
+        // Resolved on the calling thread, which holds the security context
         OrganizationEntity organization = organizationService.getCurrentOrganization();
 
         Map<String, Object> input = new HashMap<>();
-        input.put("action", action);
-        input.put(fieldName, valueToCheck);
+        input.put("action", WorkflowPolicyGenerator.EXECUTION_ACTION);
+        input.put("username", username);
+        input.put("execution_id", String.valueOf(executionId)); // ACL document keys are strings
         input.put("organization_id", organization.getId()); // Add organization ID to policy input
 
-        Map<String, Object> requestBody = Map.of("input", input);
+        return evaluateAllow(WorkflowPolicyGenerator.executionAclKey(executionId),
+                WorkflowPolicyGenerator.EXECUTION_POLICY_PACKAGE, input);
+    }
+
+    /**
+     * Evaluates several actions against all roles of a user with a single
+     * policy query, using the allowed_actions rule of the workflow policy.
+     * Policies deployed before that rule existed are evaluated role by role.
+     *
+     * @return A map from each requested action to whether any of the roles may
+     *         perform it
+     */
+    public Map<String, Boolean> getAllowedActions(Long workflowId, Collection<String> actions,
+            Collection<String> roles) {
+        String policyPackage = WorkflowPolicyGenerator.policyPackage(workflowId);
+        List<String> roleList = roles.stream().distinct().sorted().toList();
+
+        // A policy that is still being deployed is evaluated from the queued rules
+        if (deploymentQueue.getState(policyPackage) == PolicyDeploymentQueue.State.PENDING) {
+            return getAllowedActionsPerRole(workflowId, actions, roleList);
+        }
+
+        // Serve from the cache when every action has a live decision for this role set
+        Map<String, Boolean> decisions = new LinkedHashMap<>();
+        for (String action : actions) {
+            Boolean cached = decisionCache.get(policyPackage, Map.of("action", action, "roles", roleList));
+            if (cached == null) {
+                decisions = null;
+                break;
+            }
+            decisions.put(action, cached);
+        }
+        if (decisions != null) {
+            return decisions;
+        }
+
+        long generation = decisionCache.generation();
 
+        Timer.Sample sample = metrics.start();
         try {
-            JsonNode response = opaWebClient.post()
-                    .uri("/v1/data/" + policyPackage + "/allow")
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(JsonNode.class)
-                    .block();
-
-            boolean allowed = response != null && response.path("result").asBoolean(false);
-            System.out.println(
-                    "OPA check for action [" + action + "] with " + fieldName + " [" + valueToCheck +
-                            "] on policy package [" + policyPackage + "] for organization [" + organization.getName() +
-                            "] returned: " + allowed);
-            return allowed;
+            Set<String> allowedActions = policyEvaluator.evaluateAllowedActions(workflowId, actions, roleList);
+            metrics.recordOpaDecision(sample, "allowed_actions",
+                    allowedActions == null ? "unsupported" : allowedActions.isEmpty() ? "deny" : "allow");
+            if (allowedActions == null) {
+                // The deployed policy predates allowed_actions
+                return getAllowedActionsPerRole(workflowId, actions, roleList);
+            }
+
+            decisions = new LinkedHashMap<>();
+            for (String action : actions) {
+                boolean allowed = allowedActions.contains(action);
+                decisions.put(action, allowed);
+                decisionCache.put(generation, policyPackage, Map.of("action", action, "roles", roleList), allowed);
+            }
+            logger.debug("OPA check for actions {} with roles {} on {} returned {}", actions, roleList,
+                    policyPackage, allowedActions);
+            return decisions;
         } catch (Exception e) {
-            System.err.println("Error checking execution permissions: " + e.getMessage());
-            return false;
+            metrics.recordOpaDecision(sample, "allowed_actions", WorkflowMetrics.OUTCOME_ERROR);
+            logger.warn("Error checking actions {} on {}: {}", actions, policyPackage, e.getMessage());
+            Map<String, Boolean> denied = new LinkedHashMap<>();
+            actions.forEach(action -> denied.put(action, false));
+            return denied;
+        }
+    }
+
+    /**
+     * Checks whether any of the given roles may perform an action on a workflow
+     */
+    public boolean isActionAllowedForAnyRole(Long workflowId, String action, Collection<String> roles) {
+        return getAllowedActions(workflowId, List.of(action), roles).getOrDefault(action, false);
+    }
+
+    private Map<String, Boolean> getAllowedActionsPerRole(Long workflowId, Collection<String> actions,
+            Collection<String> roles) {
+        Map<String, Boolean> decisions = new LinkedHashMap<>();
+        for (String action : actions) {
+            decisions.put(action, roles.stream().anyMatch(role -> isActionAllowed(workflowId, action, role)));
         }
+        return decisions;
     }
 
     public boolean isActionAllowed(Long workflowId, String action, String role) {
-        String policyPackage = "workflow_" + workflowId;
+        return Boolean.TRUE.equals(isActionAllowedAsync(workflowId, action, role).block());
+    }
+
+    /**
+     * Non-blocking variant of {@link #isActionAllowed(Long, String, String)}.
+     * Emits false if the policy cannot be evaluated.
+     */
+    public Mono<Boolean> isActionAllowedAsync(Long workflowId, String action, String role) {
+        String policyPackage = WorkflowPolicyGenerator.policyPackage(workflowId);
         Map<String, Object> input = new HashMap<>();
         input.put("action", action);
         input.put("role", role);
 
-        Map<String, Object> requestBody = Map.of("input", input);
+        return evaluateAllow(policyPackage, policyPackage, input);
+    }
 
-        try {
-            JsonNode response = opaWebClient.post()
-                    .uri("/v1/data/" + policyPackage + "/allow")
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(JsonNode.class)
-                    .block();
-
-            boolean allowed = response != null && response.path("result").asBoolean(false);
-            System.out
-                    .println("OPA check for action [" + action + "] with role [" + role + "] on workflow_" + workflowId
-                            + " returned: " + allowed);
-            return allowed;
-        } catch (Exception e) {
-            System.err.println("Error checking workflow roles: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+    /**
+     * Evaluate the allow rule of a policy package, from the queued rules while
+     * the deployment key is pending and through the decision cache otherwise.
+     * Decisions are cached under the deployment key, so they are invalidated
+     * when it is redeployed. Errors, including timeouts and an open circuit
+     * breaker, deny the action.
+     */
+    private Mono<Boolean> evaluateAllow(String key, String policyPackage, Map<String, Object> input) {
+        Optional<Boolean> pendingDecision = deploymentQueue.evaluatePending(key, input);
+        if (pendingDecision.isPresent()) {
+            return Mono.just(pendingDecision.get());
         }
-    }
 
+        Boolean cached = decisionCache.get(key, input);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+
+        long generation = decisionCache.generation();
+        String policy = WorkflowMetrics.policyKind(policyPackage);
+        return Mono.defer(() -> {
+            Timer.Sample sample = metrics.start();
+            return policyEvaluator.evaluateAllowAsync(policyPackage, input)
+                    .doOnNext(allowed -> {
+                        metrics.recordOpaDecision(sample, policy, allowed ? "allow" : "deny");
+                        logger.debug("OPA check on {} with input {} returned {}", key, input, allowed);
+                        decisionCache.put(generation, key, input, allowed);
+                    })
+                    .onErrorResume(e -> {
+                        metrics.recordOpaDecision(sample, policy, WorkflowMetrics.OUTCOME_ERROR);
+                        logger.warn("Error in OPA check on {} with input {}: {}", key, input, e.getMessage());
+                        return Mono.just(false);
+                    });
+        });
+    }
 }
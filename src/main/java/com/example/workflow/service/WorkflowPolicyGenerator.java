@@ -0,0 +1,181 @@
+package com.example.workflow.service;
+
+import com.example.workflow.model.CompiledWorkflowDefinition;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the policy rule model of a workflow and renders it as the Rego policy
+ * deployed to OPA.
+ *
+ * Each review or approval node allows its action for its role, and uploads are
+ * allowed for everyone at the workflow level. Uploads to an execution are
+ * restricted to its initiator by a single shared execution policy that reads
+ * the initiator from the execution ACL data document, so adding executions
+ * only adds data, never policy modules. The same model is evaluated in memory
+ * by {@link InProcessPolicyEvaluator}.
+ */
+public final class WorkflowPolicyGenerator {
+
+    /** Actions the workflow level policy allows regardless of role */
+    public static final Set<String> UNRESTRICTED_ACTIONS = Set.of("upload");
+
+    /** The only action the execution level policy allows, and only to the initiator */
+    public static final String EXECUTION_ACTION = "upload";
+
+    /** Package of the shared execution level policy */
+    public static final String EXECUTION_POLICY_PACKAGE = "workflow_executions";
+
+    /** OPA data document holding the initiator of each execution, keyed by execution id */
+    public static final String EXECUTION_ACL_DOCUMENT = "workflow_execution_acl";
+
+    /** Matches the per-execution policy packages deployed by earlier versions */
+    private static final Pattern LEGACY_EXECUTION_PACKAGE = Pattern.compile("workflow_\\d+_\\d+");
+
+    private WorkflowPolicyGenerator() {
+    }
+
+    /**
+     * Get the OPA policy package of a workflow
+     */
+    public static String policyPackage(Long workflowId) {
+        return "workflow_" + workflowId;
+    }
+
+    /**
+     * Get the key under which the ACL entry of an execution is deployed and
+     * its decisions are cached
+     */
+    public static String executionAclKey(Long executionId) {
+        return EXECUTION_ACL_DOCUMENT + "/" + executionId;
+    }
+
+    /**
+     * Check whether a policy id is a per-execution package deployed by an
+     * earlier version, which the shared execution policy replaces
+     */
+    public static boolean isLegacyExecutionPackage(String policyId) {
+        return LEGACY_EXECUTION_PACKAGE.matcher(policyId).matches();
+    }
+
+    /**
+     * Collect the roles allowed to perform each role-gated action of a workflow
+     *
+     * @return A map from action to the roles allowed to perform it
+     */
+    public static Map<String, Set<String>> actionRoles(CompiledWorkflowDefinition definition) {
+        Map<String, Set<String>> actionRoles = new LinkedHashMap<>();
+        for (int i = 0; i < definition.getNodeCount(); i++) {
+            CompiledWorkflowDefinition.NodeSpec node = definition.getNodeAt(i);
+            switch (node.getType()) {
+                case "Document Review":
+                    // Use reviewer role from the node properties
+                    actionRoles.computeIfAbsent("review", k -> new LinkedHashSet<>())
+                            .add(node.getProperties().getOrDefault("reviewerRole", "manager"));
+                    break;
+                case "Approve/Reject":
+                    // Use approver role from the node properties
+                    actionRoles.computeIfAbsent("approve", k -> new LinkedHashSet<>())
+                            .add(node.getProperties().getOrDefault("Approver Role", "senior_manager"));
+                    break;
+                default:
+                    // Upload is handled by the execution level policy
+                    break;
+            }
+        }
+        actionRoles.replaceAll((action, roles) -> Collections.unmodifiableSet(roles));
+        return Collections.unmodifiableMap(actionRoles);
+    }
+
+    /**
+     * Evaluate the workflow level allow rule against a rule model built by
+     * {@link #actionRoles}
+     */
+    public static boolean allows(Map<String, Set<String>> actionRoles, Object action, Object role) {
+        if (action == null) {
+            return false;
+        }
+        if (UNRESTRICTED_ACTIONS.contains(action)) {
+            return true;
+        }
+        Set<String> roles = actionRoles.get(action);
+        return roles != null && roles.contains(role);
+    }
+
+    /**
+     * Evaluate the execution level allow rule for the given initiator
+     */
+    public static boolean executionAllows(String initiator, Object action, Object username) {
+        return EXECUTION_ACTION.equals(action) && initiator != null && initiator.equals(username);
+    }
+
+    /**
+     * Generate a Rego policy for the workflow based on its node properties.
+     * Each node type generates a rule for a specific action.
+     */
+    public static String generate(CompiledWorkflowDefinition definition) {
+        StringBuilder policy = new StringBuilder();
+        policy.append("package ").append(policyPackage(definition.getWorkflowId())).append("\n\n");
+        policy.append("default allow = false\n\n");
+
+        actionRoles(definition).forEach((action, roles) -> {
+            for (String role : roles) {
+                policy.append("allow if {\n")
+                        .append("    input.action == ").append(regoString(action)).append("\n")
+                        .append("    input.role == ").append(regoString(role)).append("\n")
+                        .append("}\n\n");
+            }
+        });
+
+        // Add a general "allow" for uploads at the workflow level
+        for (String action : UNRESTRICTED_ACTIONS) {
+            policy.append("allow if {\n")
+                    .append("    input.action == ").append(regoString(action)).append("\n")
+                    .append("}\n\n");
+        }
+
+        // Evaluate every requested action against every role of the user at once
+        policy.append("allowed_actions contains action if {\n")
+                .append("    some action in input.actions\n")
+                .append("    some role in input.roles\n")
+                .append("    allow with input as {\"action\": action, \"role\": role}\n")
+                .append("}\n");
+
+        return policy.toString();
+    }
+
+    /**
+     * Generate the shared execution level policy, which only allows the user
+     * that started an execution to upload documents. The initiator is looked
+     * up in the execution ACL document by the execution_id input.
+     */
+    public static String generateExecutionPolicy() {
+        StringBuilder policy = new StringBuilder();
+        policy.append("package ").append(EXECUTION_POLICY_PACKAGE).append("\n\n");
+        policy.append("default allow = false\n\n");
+        policy.append("allow if {\n")
+                .append("    input.action == ").append(regoString(EXECUTION_ACTION)).append("\n")
+                .append("    data.").append(EXECUTION_ACL_DOCUMENT)
+                .append("[input.execution_id].initiator == input.username\n")
+                .append("}\n");
+        return policy.toString();
+    }
+
+    /**
+     * Build the ACL entry of an execution as stored in the execution ACL
+     * document
+     */
+    public static Map<String, Object> executionAclEntry(String initiator) {
+        return Map.of("initiator", initiator);
+    }
+
+    private static String regoString(String value) {
+        String text = String.valueOf(value);
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -1,11 +1,16 @@
 package com.example.workflow.views;
 
+import com.example.workflow.config.JsonMappers;
 import com.example.workflow.entity.OrganizationEntity;
+import com.example.workflow.model.NodePosition;
+import com.example.workflow.model.WorkflowConnection;
+import com.example.workflow.model.WorkflowDocument;
 import com.example.workflow.model.WorkflowJsonEntity;
+import com.example.workflow.model.WorkflowNodeData;
 import com.example.workflow.repository.WorkflowJsonRepository;
 import com.example.workflow.service.OrganizationService;
+import com.example.workflow.service.WorkflowDefinitionCache;
 import com.example.workflow.service.WorkflowOPAService;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.ClientCallable;
 import com.vaadin.flow.component.dependency.JsModule;
@@ -65,7 +70,7 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
     private Button clearAllBtn;
 
     private Map<String, Component> nodeIdMap = new HashMap<>();
-    private List<Map<String, String>> connections = new ArrayList<>();
+    private List<WorkflowConnection> connections = new ArrayList<>();
 
     // Inject the OPA service
     @Autowired
@@ -74,6 +79,12 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
     @Autowired
     private OrganizationService organizationService;
 
+    @Autowired
+    private WorkflowDefinitionCache definitionCache;
+
+    @Autowired
+    private JsonMappers jsonMappers;
+
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(WorkflowCreatorView.class);
 
     @Override
@@ -131,33 +142,25 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
             connections.clear();
 
             try {
-                ObjectMapper mapper = new ObjectMapper();
-                Map<String, Object> workflowData = mapper.readValue(
-                        entity.getData(),
-                        new com.fasterxml.jackson.core.type.TypeReference<Map<String, Object>>() {
-                        });
+                WorkflowDocument workflowDocument = WorkflowDocument.parse(entity.getData());
 
                 // Extract nodes data
-                List<Map<String, Object>> nodesData = (List<Map<String, Object>>) workflowData.getOrDefault("nodes",
-                        new ArrayList<>());
+                List<WorkflowNodeData> nodesData = new ArrayList<>(workflowDocument.getNodes());
 
                 log.info("Loaded {} nodes from workflow data", nodesData.size());
 
                 // Sort nodes by order if available
-                nodesData.sort(Comparator.comparingInt(n -> (int) n.getOrDefault("order", 0)));
+                nodesData.sort(Comparator.comparingInt(n -> n.getOrder() != null ? n.getOrder() : 0));
 
                 // Create and add nodes to the canvas
-                for (Map<String, Object> nodeMap : nodesData) {
-                    String name = (String) nodeMap.get("name");
-                    String type = (String) nodeMap.get("type");
-                    String desc = (String) nodeMap.getOrDefault("description", "");
-
-                    @SuppressWarnings("unchecked")
-                    Map<String, String> props = (Map<String, String>) nodeMap.getOrDefault("props",
-                            new HashMap<String, String>());
+                for (WorkflowNodeData nodeData : nodesData) {
+                    String name = nodeData.getName();
+                    String type = nodeData.getType();
+                    String desc = nodeData.getDescription() != null ? nodeData.getDescription() : "";
+                    Map<String, String> props = nodeData.getProps();
 
                     // Extract or generate node ID
-                    String nodeId = (String) nodeMap.get("id");
+                    String nodeId = nodeData.getId();
                     if (nodeId == null) {
                         nodeId = "node-" + UUID.randomUUID().toString();
                     }
@@ -183,11 +186,10 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
                     arrangeNodesInGrid();
 
                     // Set the position of the node if available
-                    @SuppressWarnings("unchecked")
-                    Map<String, String> position = (Map<String, String>) nodeMap.get("position");
+                    NodePosition position = nodeData.getPosition();
                     if (position != null) {
-                        String left = position.get("left");
-                        String top = position.get("top");
+                        String left = position.getLeft();
+                        String top = position.getTop();
                         if (left != null && top != null) {
                             nodeBtn.getElement().getStyle().set("left", left);
                             nodeBtn.getElement().getStyle().set("top", top);
@@ -208,14 +210,14 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
                 }
 
                 // Extract connections data
-                if (workflowData.containsKey("connections")) {
-                    connections = (List<Map<String, String>>) workflowData.get("connections");
+                if (!workflowDocument.getConnections().isEmpty()) {
+                    connections = new ArrayList<>(workflowDocument.getConnections());
                     log.info("Loaded {} connections from workflow data", connections.size());
 
                     // Check if connections use jsPlumb internal IDs and migrate if needed
                     boolean needsMigration = false;
-                    for (Map<String, String> conn : connections) {
-                        if (conn.containsKey("source") && conn.get("source").startsWith("jsPlumb_")) {
+                    for (WorkflowConnection conn : connections) {
+                        if (conn.getSource() != null && conn.getSource().startsWith("jsPlumb_")) {
                             needsMigration = true;
                             break;
                         }
@@ -231,7 +233,7 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
                         // you would need to determine the mapping based on the DOM structure
                         // For now, we'll just use the node order to map IDs
                         List<String> nodeIds = nodesData.stream()
-                                .map(node -> (String) node.get("id"))
+                                .map(WorkflowNodeData::getId)
                                 .collect(Collectors.toList());
 
                         for (int i = 0; i < nodeIds.size(); i++) {
@@ -240,12 +242,12 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
                         }
 
                         // Update the connections with the mapped IDs
-                        for (Map<String, String> conn : connections) {
-                            if (conn.containsKey("source") && idMapping.containsKey(conn.get("source"))) {
-                                conn.put("source", idMapping.get(conn.get("source")));
+                        for (WorkflowConnection conn : connections) {
+                            if (conn.getSource() != null && idMapping.containsKey(conn.getSource())) {
+                                conn.setSource(idMapping.get(conn.getSource()));
                             }
-                            if (conn.containsKey("target") && idMapping.containsKey(conn.get("target"))) {
-                                conn.put("target", idMapping.get(conn.get("target")));
+                            if (conn.getTarget() != null && idMapping.containsKey(conn.getTarget())) {
+                                conn.setTarget(idMapping.get(conn.getTarget()));
                             }
                         }
                     }
@@ -269,7 +271,7 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
                                 "    window.workflowConnections.loadConnections($0);" +
                                 "  }" +
                                 "}, 500);", // Reduced delay to 0.5 seconds
-                        mapper.writeValueAsString(connections));
+                        jsonMappers.writer().writeValueAsString(connections));
 
                 log.info("Workflow loaded successfully: {}", entity.getId());
                 Notification.show("Workflow loaded successfully", 3000, Notification.Position.BOTTOM_END);
@@ -839,20 +841,17 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
                 return;
             }
 
-            ObjectMapper mapper = new ObjectMapper();
-            List<Map<String, String>> newConnections = mapper.readValue(
-                    connectionsJson,
-                    new com.fasterxml.jackson.core.type.TypeReference<List<Map<String, String>>>() {
-                    });
+            List<WorkflowConnection> newConnections = jsonMappers.connectionListReader()
+                    .readValue(connectionsJson);
 
             // Check if the connections are actually different before updating and logging
             if (!newConnections.equals(connections)) {
                 connections = newConnections;
-                System.out.println("Updated connections: " + connections);
+                log.debug("Updated connections: {}", connections);
             }
         } catch (Exception e) {
             Notification.show("Error updating connections: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error updating connections", e);
         }
     }
 
@@ -1119,28 +1118,9 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
             WorkflowJsonEntity entity = new WorkflowJsonEntity();
             // Need to get the current workflow data here
 
-            // 1) Build a list of node data
-            List<Map<String, Object>> nodesData = new ArrayList<>();
-
-            workflowCanvas.getChildren()
-                    .filter(c -> c != connectorLayer)
-                    .forEach(component -> {
-                        WorkflowNodeProperties props = nodeProperties.get(component);
-                        if (props != null) {
-                            Map<String, Object> nodeMap = new HashMap<>();
-                            nodeMap.put("name", props.name);
-                            nodeMap.put("type", props.type);
-                            nodeMap.put("description", props.description);
-                            nodeMap.put("props", props.additionalProperties);
-                            nodeMap.put("order", workflowCanvas.indexOf(component));
-                            nodesData.add(nodeMap);
-                        }
-                    });
-            // 2) Serialize to JSON
-            ObjectMapper mapper = new ObjectMapper();
             String jsonData = null;
             try {
-                jsonData = mapper.writeValueAsString(nodesData);
+                jsonData = buildWorkflowDocument().toJson();
             } catch (Exception ex) {
                 Notification.show("Error saving workflow: " + ex.getMessage());
                 return;
@@ -1268,7 +1248,6 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
                     WorkflowJsonEntity entity = new WorkflowJsonEntity();
                     entity.setName(workflowName);
                     // Add this debug logging right before saving
-                    System.out.println("About to save workflow with data: " + jsonData);
                     entity.setData(jsonData);
 
                     // Set the organization
@@ -1278,8 +1257,7 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
                     Notification.show("Workflow saved with ID: " + entity.getId());
 
                     // Generate and deploy the OPA policy for this new workflow
-                    String policy = generateWorkflowPolicy(entity.getId());
-                    workflowOPAService.deployWorkflowPolicy(entity.getId(), policy);
+                    workflowOPAService.deployWorkflowPolicy(definitionCache.getCompiled(entity));
 
                     dialog.close();
                 } catch (Exception e) {
@@ -1297,52 +1275,46 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
         dialog.open();
     }
 
+    /**
+     * Build the workflow document from the nodes on the canvas and the current
+     * connections
+     */
+    private WorkflowDocument buildWorkflowDocument() {
+        List<WorkflowNodeData> nodesData = new ArrayList<>();
+        workflowCanvas.getChildren()
+                .filter(c -> c != connectorLayer)
+                .forEach(component -> {
+                    WorkflowNodeProperties props = nodeProperties.get(component);
+                    if (props != null) {
+                        WorkflowNodeData nodeData = new WorkflowNodeData();
+                        nodeData.setName(props.name);
+                        nodeData.setType(props.type);
+                        nodeData.setDescription(props.description);
+                        nodeData.setProps(new LinkedHashMap<>(props.additionalProperties));
+                        nodeData.setOrder(workflowCanvas.indexOf(component));
+
+                        // Save the node ID
+                        nodeData.setId(component.getElement().getAttribute("data-node-id"));
+
+                        // Save the position of the component
+                        String left = component.getElement().getStyle().get("left");
+                        String top = component.getElement().getStyle().get("top");
+                        if (left != null && top != null) {
+                            nodeData.setPosition(new NodePosition(left, top));
+                        }
+
+                        nodesData.add(nodeData);
+                    }
+                });
+        return new WorkflowDocument(nodesData, new ArrayList<>(connections));
+    }
+
     private void saveWorkflow() {
         try {
             // Get current organization
             OrganizationEntity organization = organizationService.getCurrentOrganization();
 
-            List<Map<String, Object>> nodesData = new ArrayList<>();
-            workflowCanvas.getChildren()
-                    .filter(c -> c != connectorLayer)
-                    .forEach(component -> {
-                        WorkflowNodeProperties props = nodeProperties.get(component);
-                        if (props != null) {
-                            Map<String, Object> nodeMap = new HashMap<>();
-                            nodeMap.put("name", props.name);
-                            nodeMap.put("type", props.type);
-                            nodeMap.put("description", props.description);
-                            nodeMap.put("props", props.additionalProperties);
-                            nodeMap.put("order", workflowCanvas.indexOf(component));
-
-                            // Save the node ID
-                            String nodeId = component.getElement().getAttribute("data-node-id");
-                            if (nodeId != null) {
-                                nodeMap.put("id", nodeId);
-                            }
-
-                            // Save the position of the component
-                            String left = component.getElement().getStyle().get("left");
-                            String top = component.getElement().getStyle().get("top");
-                            if (left != null && top != null) {
-                                Map<String, String> position = new HashMap<>();
-                                position.put("left", left);
-                                position.put("top", top);
-                                nodeMap.put("position", position);
-                            }
-
-                            nodesData.add(nodeMap);
-                        }
-                    });
-
-            Map<String, Object> workflowData = new HashMap<>();
-            workflowData.put("nodes", nodesData);
-            workflowData.put("connections", connections);
-
-            System.out.println("Saving workflow with connections: " + connections);
-
-            ObjectMapper mapper = new ObjectMapper();
-            String jsonData = mapper.writeValueAsString(workflowData);
+            String jsonData = buildWorkflowDocument().toJson();
 
             String path = UI.getCurrent().getInternals().getActiveViewLocation().getPath();
             if (path.matches("workflow-creator/\\d+")) {
@@ -1370,13 +1342,13 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
                         entity.setOrganization(organization);
                     }
 
-                    System.out.println("Saving workflow with data: " + jsonData);
+                    log.debug("Saving workflow {} with data: {}", entity.getId(), jsonData);
                     workflowJsonRepository.save(entity);
+                    definitionCache.invalidate(entity.getId());
                     Notification.show("Workflow updated successfully");
 
                     // Generate and deploy the OPA policy for this workflow
-                    String policy = generateWorkflowPolicy(entity.getId());
-                    workflowOPAService.deployWorkflowPolicy(entity.getId(), policy);
+                    workflowOPAService.deployWorkflowPolicy(definitionCache.getCompiled(entity));
                 } else {
                     // Workflow not found, create new
                     showSaveDialog(jsonData);
@@ -1389,50 +1361,6 @@ public class WorkflowCreatorView extends VerticalLayout implements HasUrlParamet
         }
     }
 
-    /**
-     * Generate a Rego policy for the workflow based on its node properties.
-     * Each node type generates a rule for a specific action.
-     */
-    private String generateWorkflowPolicy(Long workflowId) {
-        StringBuilder policy = new StringBuilder();
-        policy.append("package workflow_").append(workflowId).append("\n\n");
-        policy.append("default allow = false\n\n");
-
-        // Iterate over each node's properties
-        for (WorkflowNodeProperties props : nodeProperties.values()) {
-            switch (props.type) {
-                case "Upload":
-                    // Skip creating upload policies - will be handled at the execution level
-                    break;
-                case "Document Review":
-                    // Use reviewer role from the node properties
-                    String reviewerRole = props.additionalProperties.getOrDefault("reviewerRole", "manager");
-                    policy.append("allow if{\n")
-                            .append("    input.action == \"review\"\n")
-                            .append("    input.role == \"").append(reviewerRole).append("\"\n")
-                            .append("}\n\n");
-                    break;
-                case "Approve/Reject":
-                    // Use approver role from the node properties
-                    String approverRole = props.additionalProperties.getOrDefault("Approver Role", "senior_manager");
-                    policy.append("allow if{\n")
-                            .append("    input.action == \"approve\"\n")
-                            .append("    input.role == \"").append(approverRole).append("\"\n")
-                            .append("}\n\n");
-                    break;
-                default:
-                    // Handle additional node types here
-                    break;
-            }
-        }
-
-        // Add a general "allow" for uploads at the workflow level
-        policy.append("allow if{\n")
-                .append("    input.action == \"upload\"\n")
-                .append("}\n\n");
-
-        return policy.toString();
-    }
     // Improve the setEditMode method:
 
     private void setEditMode(boolean editMode) {
@@ -24,6 +24,7 @@ import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.spring.data.VaadinSpringDataHelpers;
 import com.vaadin.flow.spring.annotation.UIScope;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,6 +49,7 @@ public class WorkflowInUseListView extends VerticalLayout {
     private final WorkflowExecutionService workflowExecutionService;
     private Grid<WorkflowExecutionEntity> grid;
     private TextField filter;
+    private boolean dataProviderConfigured;
 
     @Autowired
     private OrganizationService organizationService;
@@ -99,11 +101,13 @@ public class WorkflowInUseListView extends VerticalLayout {
         grid.addColumn(entity -> entity.getWorkflow().getName())
                 .setHeader("Workflow")
                 .setSortable(true)
+                .setSortProperty("workflow.name")
                 .setAutoWidth(true);
 
         grid.addColumn(WorkflowExecutionEntity::getDocumentType)
                 .setHeader("Document Type")
                 .setSortable(true)
+                .setSortProperty("documentType")
                 .setAutoWidth(true);
 
         grid.addColumn(new ComponentRenderer<>(entity -> {
@@ -122,77 +126,56 @@ public class WorkflowInUseListView extends VerticalLayout {
                         "<span style='" + badgeStyle + "'>" + stageName + "</span>"));
             }
 
-            try {
-                com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-                java.util.Map<String, Object> workflowData = mapper.readValue(
-                        entity.getWorkflow().getData(),
-                        new com.fasterxml.jackson.core.type.TypeReference<java.util.Map<String, Object>>() {
-                        });
-                // Then extract the nodes list from the map
-                java.util.List<java.util.Map<String, Object>> workflowNodes = (java.util.List<java.util.Map<String, Object>>) workflowData
-                        .get("nodes");
-
-                if (workflowNodes == null) {
-                    // Handle the case where there's no nodes property
-                    return new Span(new com.vaadin.flow.component.Html(
-                            "<span style='padding: 0.25em 0.5em; border-radius: 4px; background-color: #E0E0E0; color: black;'>Unknown Stage</span>"));
+            // The current node type is denormalized on the execution, so no
+            // workflow JSON has to be parsed per row
+            String nodeType = entity.getCurrentNodeType();
+            if (nodeType != null) {
+                switch (nodeType) {
+                    case "Upload":
+                        stageName = "Upload Stage";
+                        badgeStyle = "padding: 0.25em 0.5em; border-radius: 4px; background-color: #2196F3; color: white;";
+                        break;
+                    case "Doc Review":
+                        stageName = "Doc Review Stage";
+                        badgeStyle = "padding: 0.25em 0.5em; border-radius: 4px; background-color: #FFC107; color: black;";
+                        break;
+                    case "Approval":
+                        stageName = "Approval Stage";
+                        badgeStyle = "padding: 0.25em 0.5em; border-radius: 4px; background-color: #9C27B0; color: white;";
+                        break;
+                    case "Completed":
+                        stageName = "Completed";
+                        badgeStyle = "padding: 0.25em 0.5em; border-radius: 4px; background-color: #4CAF50; color: white;";
+                        break;
+                    case "Rejected":
+                        stageName = "Rejected";
+                        badgeStyle = "padding: 0.25em 0.5em; border-radius: 4px; background-color: #F44336; color: white;";
+                        break;
+                    default:
+                        stageName = nodeType + " Stage"; // Custom component name
                 }
-
-                int currentNodeIndex = entity.getCurrentNodeIndex();
-                if (currentNodeIndex >= 0 && currentNodeIndex < workflowNodes.size()) {
-                    java.util.Map<String, Object> currentNode = workflowNodes.get(currentNodeIndex);
-                    String nodeType = (String) currentNode.get("type");
-
-                    switch (nodeType) {
-                        case "Upload":
-                            stageName = "Upload Stage";
-                            badgeStyle = "padding: 0.25em 0.5em; border-radius: 4px; background-color: #2196F3; color: white;";
-                            break;
-                        case "Doc Review":
-                            stageName = "Doc Review Stage";
-                            badgeStyle = "padding: 0.25em 0.5em; border-radius: 4px; background-color: #FFC107; color: black;";
-                            break;
-                        case "Approval":
-                            stageName = "Approval Stage";
-                            badgeStyle = "padding: 0.25em 0.5em; border-radius: 4px; background-color: #9C27B0; color: white;";
-                            break;
-                        case "Completed":
-                            stageName = "Completed";
-                            badgeStyle = "padding: 0.25em 0.5em; border-radius: 4px; background-color: #4CAF50; color: white;";
-                            break;
-                        case "Rejected":
-                            stageName = "Rejected";
-                            badgeStyle = "padding: 0.25em 0.5em; border-radius: 4px; background-color: #F44336; color: white;";
-                            break;
-                        default:
-                            stageName = nodeType + " Stage"; // Custom component name
-                    }
-                }
-            } catch (Exception e) {
-                // Add more detailed logging
-                System.err.println("Error parsing workflow data: " + e.getMessage());
-                e.printStackTrace();
-
-                // Handle parsing errors
-                return new Span(new com.vaadin.flow.component.Html(
-                        "<span style='padding: 0.25em 0.5em; border-radius: 4px; background-color: #E0E0E0; color: black;'>Error: "
-                                + e.getMessage() + "</span>"));
             }
+
             // Return a Span with inline styles
             return new Span(
                     new com.vaadin.flow.component.Html("<span style='" + badgeStyle + "'>" + stageName + "</span>"));
-        })).setHeader("Status").setSortable(true).setWidth("100px");
+        })).setHeader("Status")
+                .setSortable(true)
+                // Sort as displayed: by status, then in-progress rows by their current stage
+                .setSortProperty("status", "currentNodeType")
+                .setWidth("100px");
 
         grid.addColumn(entity -> {
             if (entity.getUpdatedAt() != null) {
                 return entity.getUpdatedAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
             }
             return "";
-        }).setHeader("Last Updated").setSortable(true).setWidth("150px");
+        }).setHeader("Last Updated").setSortable(true).setSortProperty("updatedAt").setWidth("150px");
 
         grid.addColumn(WorkflowExecutionEntity::getCreatedBy)
                 .setHeader("Created By")
                 .setSortable(true)
+                .setSortProperty("createdBy")
                 .setAutoWidth(true);
 
         grid.addColumn(new ComponentRenderer<>(entity -> {
@@ -296,38 +279,31 @@ public class WorkflowInUseListView extends VerticalLayout {
     }
 
     private void refreshGrid() {
-        String currentUsername = getCurrentUsername();
-        List<String> userRoles = getCurrentUserRoles();
-        OrganizationEntity organization = organizationService.getCurrentOrganization();
-
-        // Get executions filtered by organization and user permissions
-        List<WorkflowExecutionEntity> executions = workflowExecutionService
-                .getWorkflowExecutionsForUserAndOrganization(currentUsername, userRoles, organization);
-        grid.setItems(executions);
+        if (!dataProviderConfigured) {
+            configureDataProvider();
+        }
+        grid.getDataProvider().refreshAll();
     }
 
     private void applyFilter() {
-        String filterText = filter.getValue().trim().toLowerCase();
+        refreshGrid();
+    }
+
+    /**
+     * Back the grid with a lazy data provider so only the visible window of
+     * executions is fetched, with sorting and filtering done by the database
+     */
+    private void configureDataProvider() {
         String currentUsername = getCurrentUsername();
         List<String> userRoles = getCurrentUserRoles();
         OrganizationEntity organization = organizationService.getCurrentOrganization();
 
-        // Get executions filtered by organization and user permissions
-        List<WorkflowExecutionEntity> executions = workflowExecutionService
-                .getWorkflowExecutionsForUserAndOrganization(currentUsername, userRoles, organization);
-
-        if (!filterText.isEmpty()) {
-            executions = executions.stream().filter(exec -> (exec.getUploadedFileName() != null &&
-                    exec.getUploadedFileName().toLowerCase().contains(filterText)) ||
-                    (exec.getWorkflow() != null &&
-                            exec.getWorkflow().getName().toLowerCase().contains(filterText))
-                    ||
-                    (exec.getStatus() != null &&
-                            exec.getStatus().toLowerCase().contains(filterText)))
-                    .collect(Collectors.toList());
-        }
-
-        grid.setItems(executions);
+        grid.setItems(
+                query -> workflowExecutionService.findVisibleExecutions(currentUsername, userRoles, organization,
+                        filter.getValue(), VaadinSpringDataHelpers.toSpringPageRequest(query)).stream(),
+                query -> (int) workflowExecutionService.countVisibleExecutions(currentUsername, userRoles,
+                        organization, filter.getValue()));
+        dataProviderConfigured = true;
     }
 
     private void showDetails(WorkflowExecutionEntity entity) {
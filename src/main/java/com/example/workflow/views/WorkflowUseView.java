@@ -2,14 +2,19 @@ package com.example.workflow.views;
 
 import com.example.workflow.components.WorkflowExecutionComponent;
 import com.example.workflow.entity.OrganizationEntity;
+import com.example.workflow.model.ExecutionProgressEvent;
+import com.example.workflow.model.NodeStatus;
 import com.example.workflow.model.WorkflowDefinition;
 import com.example.workflow.model.WorkflowExecutionEntity;
 import com.example.workflow.repository.WorkflowExecutionRepository;
 import com.example.workflow.repository.WorkflowJsonRepository;
+import com.example.workflow.service.ExecutionEventBus;
 import com.example.workflow.service.OrganizationService;
+import com.example.workflow.service.WorkflowDefinitionCache;
 import com.example.workflow.service.WorkflowExecutionEngine;
-import com.example.workflow.service.WorkflowOPAService;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.dependency.CssImport;
 import com.vaadin.flow.component.dependency.JsModule;
@@ -23,12 +28,14 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.*;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -41,25 +48,45 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
     private final WorkflowJsonRepository workflowJsonRepository;
     private final WorkflowExecutionRepository workflowExecutionRepository;
     private final WorkflowExecutionEngine executionEngine;
-    private final WorkflowOPAService workflowOPAService;
     private Div contentContainer;
 
     @Autowired
     private OrganizationService organizationService;
 
+    @Autowired
+    private WorkflowDefinitionCache definitionCache;
+
+    @Autowired
+    private ExecutionEventBus eventBus;
+
     // Add this as a class field
     private VerticalLayout progressLayout;
 
+    private WorkflowExecutionComponent executionComponent;
+
+    /** The execution shown and its definition */
+    private Long executionId;
+    private WorkflowDefinition definition;
+
+    /** Stage indicators of the progress layout, by node index */
+    private final List<Div> stageIndicators = new ArrayList<>();
+
+    /** Event sequence of the shown state, to skip steps that are already shown */
+    private int shownSequence;
+
+    /** Node index the shown node component was built for */
+    private int shownNodeIndex;
+
+    private ExecutionEventBus.Subscription progressSubscription;
+
     public WorkflowUseView(
             WorkflowJsonRepository workflowJsonRepository,
             WorkflowExecutionRepository workflowExecutionRepository,
-            WorkflowExecutionEngine executionEngine,
-            WorkflowOPAService workflowOPAService) {
+            WorkflowExecutionEngine executionEngine) {
 
         this.workflowJsonRepository = workflowJsonRepository;
         this.workflowExecutionRepository = workflowExecutionRepository;
         this.executionEngine = executionEngine;
-        this.workflowOPAService = workflowOPAService;
 
         setSizeFull();
         setSpacing(false);
@@ -132,33 +159,9 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
 
                 if (!hasPermission) {
                     // Check if the user has the required role for the current node
-                    try {
-                        WorkflowDefinition definition = new WorkflowDefinition(execution.getWorkflow());
-                        int currentNodeIndex = execution.getCurrentNodeIndex();
-
-                        if (currentNodeIndex >= 0 && currentNodeIndex < definition.getNodeCount()) {
-                            var currentNode = definition.getNodeAt(currentNodeIndex);
-                            String nodeType = currentNode.getType();
-                            Map<String, String> props = currentNode.getProperties();
-
-                            // For Document Review nodes
-                            if ("Document Review".equals(nodeType)) {
-                                String reviewerRole = props.getOrDefault("reviewerRole", "");
-                                if (!reviewerRole.isEmpty() && userRoles.contains(reviewerRole)) {
-                                    hasPermission = true;
-                                }
-                            }
-                            // For Approval nodes
-                            else if ("Approve/Reject".equals(nodeType)) {
-                                String approverRole = props.getOrDefault("Approver Role", "");
-                                if (!approverRole.isEmpty() && userRoles.contains(approverRole)) {
-                                    hasPermission = true;
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        // Log error but don't fail the check
-                        System.err.println("Error checking workflow roles: " + e.getMessage());
+                    String requiredRole = execution.getRequiredRole();
+                    if (requiredRole != null && userRoles.contains(requiredRole)) {
+                        hasPermission = true;
                     }
                 }
 
@@ -172,44 +175,99 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
         }
     }
 
-    // Add this method to refresh only the progress indicators
-    public void refreshOnlyProgressIndicators(WorkflowExecutionEntity execution, WorkflowDefinition definition) {
-        // First, fetch the latest execution data to ensure we have the most up-to-date
-        // state
-        WorkflowExecutionEntity latestExecution = workflowExecutionRepository.findById(execution.getId())
-                .orElse(execution);
+    /**
+     * Show an execution and subscribe to its progress, replacing what the view
+     * showed before
+     */
+    private void showExecution(WorkflowExecutionEntity execution, WorkflowDefinition definition) {
+        contentContainer.removeAll();
+
+        this.definition = definition;
+        this.progressLayout = createProgressIndicator(execution, definition);
+        this.executionComponent = createExecutionComponent(execution, definition);
+        contentContainer.add(progressLayout);
+        contentContainer.add(executionComponent);
+        this.shownSequence = execution.getEventSequence();
+        this.shownNodeIndex = execution.getCurrentNodeIndex();
 
-        // Remove only the progress layout
-        if (progressLayout != null && progressLayout.getParent() != null) {
-            contentContainer.remove(progressLayout);
+        if (!execution.getId().equals(executionId)) {
+            subscribeToProgress(execution.getId());
         }
+    }
 
-        // Create a new progress layout with the latest execution data
-        this.progressLayout = createProgressIndicator(latestExecution, definition);
+    /**
+     * Receive the steps made on an execution in any session and push them to
+     * this view
+     */
+    private void subscribeToProgress(Long executionId) {
+        cancelProgressSubscription();
+        this.executionId = executionId;
+
+        UI ui = UI.getCurrent();
+        // Listeners run on a shared executor thread, so apply the step as the
+        // user of this view; node components check their permissions
+        SecurityContext viewerContext = SecurityContextHolder.createEmptyContext();
+        viewerContext.setAuthentication(SecurityContextHolder.getContext().getAuthentication());
+        String viewerName = getCurrentUsername();
+
+        progressSubscription = eventBus.subscribe(executionId, event -> {
+            try {
+                ui.access(() -> new DelegatingSecurityContextRunnable(() -> applyProgress(event, viewerName),
+                        viewerContext).run());
+            } catch (UIDetachedException e) {
+                cancelProgressSubscription();
+            }
+        });
+    }
 
-        // Add the new progress layout to the content container
-        contentContainer.addComponentAsFirst(progressLayout);
+    private void cancelProgressSubscription() {
+        ExecutionEventBus.Subscription subscription = progressSubscription;
+        progressSubscription = null;
+        if (subscription != null) {
+            subscription.cancel();
+        }
     }
 
-    // Modify the existing refreshProgressIndicators method to call our new method
-    public void refreshProgressIndicators(WorkflowExecutionEntity execution, WorkflowDefinition definition) {
-        // First, get the latest execution data from the database
-        WorkflowExecutionEntity latestExecution = workflowExecutionRepository.findById(execution.getId())
-                .orElse(execution);
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        cancelProgressSubscription();
+        executionId = null;
+        super.onDetach(detachEvent);
+    }
 
-        // Remove the old progress layout
-        contentContainer.removeAll();
+    /**
+     * Apply a committed step: update the stage indicators in place from the
+     * event, and only when the execution moved to another node, load it and
+     * show that node
+     */
+    private void applyProgress(ExecutionProgressEvent event, String viewerName) {
+        if (event.sequence() <= shownSequence || !event.executionId().equals(executionId)) {
+            // Already shown, e.g. by the refresh after a conflict
+            return;
+        }
+        shownSequence = event.sequence();
 
-        // Create a new progress layout with the latest execution data
-        VerticalLayout progressLayout = createProgressIndicator(latestExecution, definition);
+        for (int i = 0; i < stageIndicators.size() && i < event.nodeStatuses().size(); i++) {
+            updateStageIndicator(stageIndicators.get(i), i, event.nodeStatuses().get(i), event.currentNodeIndex());
+        }
 
-        // Create the execution component with the latest data
-        WorkflowExecutionComponent executionComponent = createExecutionComponent(
-                latestExecution, definition);
+        // The node form is built from the saved workflow data and version; this
+        // session loads its own copy rather than sharing the publisher's entity.
+        // A step that stays on the node keeps the form, and a stale version is
+        // resolved by the refresh after a conflict.
+        if (event.currentNodeIndex() != shownNodeIndex) {
+            workflowExecutionRepository.findById(event.executionId()).ifPresent(execution -> {
+                contentContainer.remove(executionComponent);
+                executionComponent = createExecutionComponent(execution, definition);
+                contentContainer.add(executionComponent);
+                shownNodeIndex = execution.getCurrentNodeIndex();
+            });
+        }
 
-        // Add both to the content container
-        contentContainer.add(progressLayout);
-        contentContainer.add(executionComponent);
+        if (event.actor() != null && !event.actor().equals(viewerName)) {
+            Notification.show("Workflow updated by " + event.actor() + ": " + event.status(),
+                    3000, Notification.Position.BOTTOM_END);
+        }
     }
 
     @Override
@@ -243,7 +301,7 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
                                 }
 
                                 // Create workflow definition
-                                WorkflowDefinition definition = new WorkflowDefinition(entity);
+                                WorkflowDefinition definition = definitionCache.getDefinition(entity);
 
                                 // Start a new execution
                                 String username = getCurrentUsername();
@@ -253,24 +311,7 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
                                 UI.getCurrent().getPage().getHistory().replaceState(null,
                                         "workflow-use/" + execution.getId());
 
-                                // Then deploy the policy
-                                workflowOPAService.deployWorkflowExecutionPolicy(
-                                        entity.getId(), execution.getId(), username);
-
-                                // Create the execution component
-                                WorkflowExecutionComponent executionComponent = createExecutionComponent(
-                                        execution, definition);
-
-                                // Create the progress indicator
-                                this.progressLayout = createProgressIndicator(execution, definition);
-
-                                // Add both to the content container
-                                contentContainer.add(progressLayout);
-                                contentContainer.add(executionComponent);
-
-                                // Deploy the execution-specific upload-stage policy
-                                workflowOPAService.deployWorkflowExecutionPolicy(
-                                        entity.getId(), execution.getId(), username);
+                                showExecution(execution, definition);
                             } catch (Exception e) {
                                 Notification.show("Error starting workflow: " + e.getMessage());
                                 UI.getCurrent().navigate(WorkflowViewerView.class);
@@ -296,18 +337,9 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
                                 }
 
                                 // Create workflow definition from the execution's workflow
-                                WorkflowDefinition definition = new WorkflowDefinition(execution.getWorkflow());
+                                WorkflowDefinition definition = definitionCache.getDefinition(execution.getWorkflow());
 
-                                // Create the execution component
-                                WorkflowExecutionComponent executionComponent = createExecutionComponent(
-                                        execution, definition);
-
-                                // Create the progress indicator
-                                this.progressLayout = createProgressIndicator(execution, definition);
-
-                                // Add both to the content container
-                                contentContainer.add(progressLayout);
-                                contentContainer.add(executionComponent);
+                                showExecution(execution, definition);
                             } catch (Exception e) {
                                 Notification.show("Error loading execution: " + e.getMessage());
                                 UI.getCurrent().navigate(WorkflowViewerView.class);
@@ -332,11 +364,7 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
                 execution,
                 definition,
                 executionEngine,
-                () -> {
-                    // Get the updated execution from the database
-                    WorkflowExecutionEntity updatedExecution = executionEngine.getExecution(execution.getId());
-                    refreshProgressIndicators(updatedExecution, definition);
-                });
+                () -> forceCompleteRefresh(execution.getId()));
 
         // Return the component
         return component;
@@ -345,9 +373,6 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
     private VerticalLayout createProgressIndicator(
             WorkflowExecutionEntity execution, WorkflowDefinition definition) {
 
-        // Get the latest node statuses
-        Map<String, String> nodeStatuses = execution.getNodeStatusesAsMap();
-
         VerticalLayout progressLayout = new VerticalLayout();
         progressLayout.setSpacing(false);
         progressLayout.setPadding(false);
@@ -382,35 +407,21 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
         // Get the current node index from the execution
         currentNodeIndex = execution.getCurrentNodeIndex();
         totalNodes = definition.getNodeCount();
+        stageIndicators.clear();
 
         // Add stage for each node in the workflow
         for (int i = 0; i < totalNodes; i++) {
             var node = definition.getNodeAt(i);
             String nodeName = node.getName();
-            String nodeStatus = nodeStatuses.getOrDefault(nodeName, "Pending");
+            NodeStatus nodeStatus = execution.getNodeStatus(i, nodeName);
 
             Div stageDiv = new Div();
             stageDiv.addClassName("workflow-stage");
 
             Div indicator = new Div();
             indicator.addClassName("stage-indicator");
-
-            // Set the indicator state based on node status
-            if ("Completed".equals(nodeStatus) || "Skipped".equals(nodeStatus)) {
-                indicator.addClassName("completed");
-                indicator.setText("✓");
-            } else if (i == currentNodeIndex || "In Progress".equals(nodeStatus)) {
-                indicator.addClassName("active");
-                indicator.setText(String.valueOf(i + 1));
-            } else if ("Rejected".equals(nodeStatus)) {
-                indicator.addClassName("rejected");
-                indicator.setText("✗");
-            } else if ("Returned".equals(nodeStatus)) {
-                indicator.addClassName("returned");
-                indicator.setText("!");
-            } else {
-                indicator.setText(String.valueOf(i + 1));
-            }
+            updateStageIndicator(indicator, i, nodeStatus, currentNodeIndex);
+            stageIndicators.add(indicator);
 
             Div label = new Div();
             label.setText(nodeName);
@@ -424,6 +435,28 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
         return progressLayout;
     }
 
+    /**
+     * Set the state of a stage indicator based on its node status
+     */
+    private void updateStageIndicator(Div indicator, int nodeIndex, NodeStatus nodeStatus, int currentNodeIndex) {
+        indicator.removeClassNames("completed", "active", "rejected", "returned");
+        if (nodeStatus.isDone()) {
+            indicator.addClassName("completed");
+            indicator.setText("✓");
+        } else if (nodeIndex == currentNodeIndex || nodeStatus == NodeStatus.IN_PROGRESS) {
+            indicator.addClassName("active");
+            indicator.setText(String.valueOf(nodeIndex + 1));
+        } else if (nodeStatus == NodeStatus.REJECTED) {
+            indicator.addClassName("rejected");
+            indicator.setText("✗");
+        } else if (nodeStatus == NodeStatus.RETURNED) {
+            indicator.addClassName("returned");
+            indicator.setText("!");
+        } else {
+            indicator.setText(String.valueOf(nodeIndex + 1));
+        }
+    }
+
     private List<String> getCurrentUserRoles() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null) {
@@ -463,21 +496,10 @@ public class WorkflowUseView extends VerticalLayout implements HasUrlParameter<L
                     .orElseThrow(() -> new RuntimeException("Execution not found"));
 
             // Get the workflow definition
-            WorkflowDefinition definition = new WorkflowDefinition(latestExecution.getWorkflow());
-
-            // Clear the container
-            contentContainer.removeAll();
-
-            // Create new components with fresh data
-            VerticalLayout newProgressLayout = createProgressIndicator(latestExecution, definition);
-            WorkflowExecutionComponent newExecutionComponent = createExecutionComponent(latestExecution, definition);
-
-            // Add them to the container
-            contentContainer.add(newProgressLayout);
-            contentContainer.add(newExecutionComponent);
+            WorkflowDefinition definition = definitionCache.getDefinition(latestExecution.getWorkflow());
 
-            // Update the class field
-            this.progressLayout = newProgressLayout;
+            // Rebuild the view with fresh data
+            showExecution(latestExecution, definition);
         } catch (Exception e) {
             Notification.show("Error refreshing view: " + e.getMessage());
         }
@@ -5,7 +5,11 @@ import com.example.workflow.model.WorkflowExecutionEntity;
 import com.example.workflow.model.WorkflowJsonEntity;
 import com.example.workflow.repository.WorkflowExecutionRepository;
 import com.example.workflow.repository.WorkflowJsonRepository;
+import com.example.workflow.service.DocumentStorageService;
+import com.example.workflow.service.ExecutionEventService;
 import com.example.workflow.service.OrganizationService;
+import com.example.workflow.service.WorkflowDefinitionCache;
+import com.example.workflow.service.WorkflowOPAService;
 import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
@@ -33,6 +37,18 @@ public class WorkflowViewerView extends VerticalLayout {
     @Autowired
     private OrganizationService organizationService;
 
+    @Autowired
+    private DocumentStorageService documentStorageService;
+
+    @Autowired
+    private WorkflowOPAService workflowOPAService;
+
+    @Autowired
+    private ExecutionEventService executionEventService;
+
+    @Autowired
+    private WorkflowDefinitionCache definitionCache;
+
     public WorkflowViewerView(WorkflowJsonRepository workflowJsonRepository,
             WorkflowExecutionRepository workflowExecutionRepository,
             OrganizationService organizationService) {
@@ -157,9 +173,15 @@ public class WorkflowViewerView extends VerticalLayout {
             try {
                 List<WorkflowExecutionEntity> executions = workflowExecutionRepository.findByWorkflow(entity);
                 workflowExecutionRepository.deleteAll(executions);
+                executions.forEach(execution -> {
+                    documentStorageService.delete(execution.getDocumentId());
+                    executionEventService.deleteHistory(execution.getId());
+                    workflowOPAService.removeExecutionAcl(execution.getId());
+                });
 
                 // Then delete the workflow
                 workflowJsonRepository.delete(entity);
+                definitionCache.invalidate(entity.getId());
                 loadWorkflows();
                 dialog.close();
                 Notification.show("Workflow deleted successfully.");
@@ -0,0 +1,171 @@
+package com.example.workflow.controller;
+
+import com.example.workflow.model.WorkflowDocumentEntity;
+import com.example.workflow.model.WorkflowExecutionEntity;
+import com.example.workflow.repository.WorkflowExecutionRepository;
+import com.example.workflow.service.DocumentStorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the byte range and revalidation handling of the execution document
+ * endpoint
+ */
+class WorkflowControllerDocumentTest {
+
+    private static final long EXECUTION_ID = 7L;
+    private static final String CONTENT = "0123456789";
+    private static final String SHA256 = "ab".repeat(32);
+    private static final String ETAG = "\"" + SHA256 + "\"";
+
+    @TempDir
+    Path tempDir;
+
+    private WorkflowController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = Files.writeString(tempDir.resolve(SHA256), CONTENT, StandardCharsets.US_ASCII);
+
+        WorkflowExecutionEntity execution = new WorkflowExecutionEntity();
+        execution.setId(EXECUTION_ID);
+        execution.setCreatedBy("alice");
+        execution.setDocumentId(3L);
+        WorkflowExecutionRepository executionRepository = mock(WorkflowExecutionRepository.class);
+        when(executionRepository.findById(EXECUTION_ID)).thenReturn(Optional.of(execution));
+
+        WorkflowDocumentEntity document = new WorkflowDocumentEntity();
+        document.setId(3L);
+        document.setSha256(SHA256);
+        document.setMimeType("application/pdf");
+        DocumentStorageService documentStorageService = mock(DocumentStorageService.class);
+        when(documentStorageService.findDocument(3L)).thenReturn(Optional.of(document));
+        when(documentStorageService.openContent(SHA256))
+                .thenAnswer(invocation -> FileChannel.open(file, StandardOpenOption.READ));
+
+        controller = new WorkflowController();
+        ReflectionTestUtils.setField(controller, "executionRepository", executionRepository);
+        ReflectionTestUtils.setField(controller, "documentStorageService", documentStorageService);
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("alice", null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void servesWholeDocumentWithoutRange() throws Exception {
+        MockHttpServletResponse response = get(null, null);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo(CONTENT);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(response.getContentType()).isEqualTo("application/pdf");
+    }
+
+    @Test
+    void servesClosedRange() throws Exception {
+        assertPartial(get("bytes=2-4", null), "2-4", "234");
+    }
+
+    @Test
+    void clampsRangeEndToDocumentSize() throws Exception {
+        assertPartial(get("bytes=8-100", null), "8-9", "89");
+    }
+
+    @Test
+    void servesOpenEndedRange() throws Exception {
+        assertPartial(get("bytes=7-", null), "7-9", "789");
+    }
+
+    @Test
+    void servesSuffixRange() throws Exception {
+        assertPartial(get("bytes=-4", null), "6-9", "6789");
+        assertPartial(get("bytes=-50", null), "0-9", CONTENT);
+    }
+
+    @Test
+    void rejectsUnsatisfiableRanges() throws Exception {
+        for (String range : List.of("bytes=10-", "bytes=20-30", "bytes=5-3", "bytes=-0")) {
+            MockHttpServletResponse response = get(range, null);
+
+            assertThat(response.getStatus()).as(range).isEqualTo(416);
+            assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).as(range).isEqualTo("bytes */10");
+        }
+    }
+
+    @Test
+    void ignoresMalformedAndMultipleRanges() throws Exception {
+        for (String range : List.of("bytes=a-b", "items=0-1", "bytes=0-1,4-5", "bytes=3")) {
+            MockHttpServletResponse response = get(range, null);
+
+            assertThat(response.getStatus()).as(range).isEqualTo(200);
+            assertThat(response.getContentAsString()).as(range).isEqualTo(CONTENT);
+        }
+    }
+
+    @Test
+    void honoursRangeOnlyWhenIfRangeMatches() throws Exception {
+        assertPartial(get("bytes=0-1", ETAG), "0-1", "01");
+
+        MockHttpServletResponse stale = get("bytes=0-1", "\"" + "cd".repeat(32) + "\"");
+        assertThat(stale.getStatus()).isEqualTo(200);
+        assertThat(stale.getContentAsString()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void answersNotModifiedForMatchingEtag() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.getExecutionDocument(EXECUTION_ID, request, response);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    private MockHttpServletResponse get(String range, String ifRange) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        if (ifRange != null) {
+            request.addHeader(HttpHeaders.IF_RANGE, ifRange);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getExecutionDocument(EXECUTION_ID, request, response);
+        return response;
+    }
+
+    private static void assertPartial(MockHttpServletResponse response, String bounds, String body)
+            throws Exception {
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes " + bounds + "/10");
+        assertThat(response.getContentLengthLong()).isEqualTo(body.length());
+        assertThat(response.getContentAsString()).isEqualTo(body);
+    }
+}
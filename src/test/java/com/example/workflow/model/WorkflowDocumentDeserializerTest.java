@@ -0,0 +1,70 @@
+package com.example.workflow.model;
+
+import com.example.workflow.config.JsonMappers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Reads both stored shapes of the workflow JSON
+ */
+class WorkflowDocumentDeserializerTest {
+
+    private static final String NODE_A = "{\"id\":\"a\",\"name\":\"Upload invoice\",\"type\":\"Upload\","
+            + "\"props\":{\"documentType\":\"Invoice\"},\"order\":0,"
+            + "\"position\":{\"left\":\"50px\",\"top\":\"120px\"},\"color\":\"blue\"}";
+    private static final String NODE_B = "{\"id\":\"b\",\"name\":\"Review\",\"type\":\"Document Review\"}";
+
+    @BeforeAll
+    static void installJsonMappers() {
+        JsonMappers.install(new JsonMappers(new ObjectMapper()));
+    }
+
+    @Test
+    void readsDocumentShape() {
+        WorkflowDocument document = WorkflowDocument.parse("{\"version\":2,\"nodes\":[" + NODE_A + ",null,"
+                + NODE_B + "],\"layout\":{\"zoom\":1},\"connections\":[{\"source\":\"a\",\"target\":\"b\"}]}");
+
+        assertThat(document.getNodes()).extracting(WorkflowNodeData::getId).containsExactly("a", "b");
+        WorkflowNodeData upload = document.getNodes().get(0);
+        assertThat(upload.getType()).isEqualTo("Upload");
+        assertThat(upload.getProps()).containsEntry("documentType", "Invoice");
+        assertThat(upload.getOrder()).isZero();
+        assertThat(upload.getPosition().getLeft()).isEqualTo("50px");
+        assertThat(document.getConnections()).singleElement().satisfies(connection -> {
+            assertThat(connection.getSource()).isEqualTo("a");
+            assertThat(connection.getTarget()).isEqualTo("b");
+        });
+    }
+
+    @Test
+    void readsLegacyNodeArray() {
+        WorkflowDocument document = WorkflowDocument.parse("[" + NODE_A + "," + NODE_B + "]");
+
+        assertThat(document.getNodes()).extracting(WorkflowNodeData::getName)
+                .containsExactly("Upload invoice", "Review");
+        assertThat(document.getConnections()).isEmpty();
+    }
+
+    @Test
+    void bothShapesReadTheSameNodes() {
+        WorkflowDocument legacy = WorkflowDocument.parse("[" + NODE_A + "," + NODE_B + "]");
+        WorkflowDocument current = WorkflowDocument.parse("{\"nodes\":[" + NODE_A + "," + NODE_B + "]}");
+
+        assertThat(legacy.toJson()).isEqualTo(current.toJson());
+    }
+
+    @Test
+    void blankJsonIsAnEmptyWorkflow() {
+        assertThat(WorkflowDocument.parse(" ").getNodes()).isEmpty();
+    }
+
+    @Test
+    void rejectsOtherShapes() {
+        assertThatThrownBy(() -> WorkflowDocument.parse("\"nodes\""))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
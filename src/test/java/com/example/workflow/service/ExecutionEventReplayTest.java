@@ -0,0 +1,204 @@
+package com.example.workflow.service;
+
+import com.example.workflow.config.JsonMappers;
+import com.example.workflow.model.CompiledWorkflowDefinition;
+import com.example.workflow.model.ExecutionEventType;
+import com.example.workflow.model.NodePosition;
+import com.example.workflow.model.NodeStatus;
+import com.example.workflow.model.WorkflowConnection;
+import com.example.workflow.model.WorkflowDocument;
+import com.example.workflow.model.WorkflowExecutionEntity;
+import com.example.workflow.model.WorkflowExecutionEventEntity;
+import com.example.workflow.model.WorkflowJsonEntity;
+import com.example.workflow.model.WorkflowNodeData;
+import com.example.workflow.repository.WorkflowExecutionEventRepository;
+import com.example.workflow.repository.WorkflowExecutionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives an execution through the engine and checks that folding its event
+ * log rebuilds the stored execution row
+ */
+class ExecutionEventReplayTest {
+
+    private static final long EXECUTION_ID = 100L;
+
+    private static final JsonMappers JSON_MAPPERS = new JsonMappers(new ObjectMapper());
+
+    private final List<WorkflowExecutionEventEntity> eventLog = new ArrayList<>();
+
+    private WorkflowExecutionEngine engine;
+    private ExecutionEventService eventService;
+    private WorkflowDefinitionCache definitionCache;
+    private WorkflowJsonEntity workflow;
+
+    @BeforeAll
+    static void installJsonMappers() {
+        JsonMappers.install(JSON_MAPPERS);
+    }
+
+    @BeforeEach
+    void setUp() {
+        WorkflowExecutionRepository executionRepository = mock(WorkflowExecutionRepository.class);
+        when(executionRepository.save(any(WorkflowExecutionEntity.class))).thenAnswer(invocation -> {
+            WorkflowExecutionEntity execution = invocation.getArgument(0);
+            execution.setId(EXECUTION_ID);
+            return execution;
+        });
+        when(executionRepository.saveAndFlush(any(WorkflowExecutionEntity.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        WorkflowExecutionEventRepository eventRepository = mock(WorkflowExecutionEventRepository.class);
+        when(eventRepository.save(any(WorkflowExecutionEventEntity.class))).thenAnswer(invocation -> {
+            eventLog.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(eventRepository.findByExecutionIdOrderBySequenceAsc(EXECUTION_ID)).thenReturn(eventLog);
+
+        eventService = new ExecutionEventService();
+        ReflectionTestUtils.setField(eventService, "eventRepository", eventRepository);
+        ReflectionTestUtils.setField(eventService, "jsonMappers", JSON_MAPPERS);
+
+        WorkflowMetrics metrics = new WorkflowMetrics(new SimpleMeterRegistry());
+        definitionCache = new WorkflowDefinitionCache(16, metrics);
+
+        engine = new WorkflowExecutionEngine();
+        ReflectionTestUtils.setField(engine, "executionRepository", executionRepository);
+        ReflectionTestUtils.setField(engine, "opaService", mock(WorkflowOPAService.class));
+        ReflectionTestUtils.setField(engine, "definitionCache", definitionCache);
+        ReflectionTestUtils.setField(engine, "documentStorageService", mock(DocumentStorageService.class));
+        ReflectionTestUtils.setField(engine, "eventService", eventService);
+        ReflectionTestUtils.setField(engine, "metrics", metrics);
+        ReflectionTestUtils.setField(engine, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(engine, "jsonMappers", JSON_MAPPERS);
+
+        // Two nodes share a name, so statuses keyed by name would collide
+        workflow = workflow("Upload", "Upload invoice", "Document Review", "Review", "Approve/Reject", "Approval",
+                "Document Review", "Review");
+    }
+
+    @Test
+    void replayRebuildsStoredStateAfterReturnAndReupload() {
+        WorkflowExecutionEntity execution = engine.startExecution(definitionCache.getDefinition(workflow), "alice");
+
+        execution = advance(execution, upload(10L, "invoice-v1.pdf"));
+        Map<String, Object> returned = step(
+                data("reviewDecision", "Changes requested", "reviewNotes", "Page 2 missing"));
+        returned.put("returnToUpload", true);
+        returned.put("nodeStatus", NodeStatus.RETURNED.getLabel());
+        execution = advance(execution, returned);
+        execution = advance(execution, upload(11L, "invoice-v2.pdf"));
+        execution = advance(execution, step(data("reviewDecision", "Approved")));
+        Map<String, Object> rejected = step(data("reviewDecision", "Approved", "approvalDecision", "Rejected"));
+        rejected.put("nodeStatus", NodeStatus.REJECTED.getLabel());
+        rejected.put("workflowStatus", "Rejected");
+        execution = advance(execution, rejected);
+        execution = advance(execution, step(data("reviewDecision", "Approved", "approvalDecision", "Rejected")));
+
+        ExecutionEventService.ReplayedState replayed = eventService.replay(EXECUTION_ID);
+        CompiledWorkflowDefinition compiled = definitionCache.getCompiled(workflow);
+
+        assertThat(replayed.getSequence()).isEqualTo(execution.getEventSequence());
+        assertThat(replayed.getCurrentNodeIndex()).isEqualTo(execution.getCurrentNodeIndex());
+        assertThat(replayed.getStatus()).isEqualTo(execution.getStatus()).isEqualTo("Rejected");
+        assertThat(replayed.getDocumentId()).isEqualTo(execution.getDocumentId()).isEqualTo(11L);
+        assertThat(NodeStatus.encode(replayed.getNodeStatusArray(compiled)))
+                .isEqualTo(execution.getNodeStatusCodes());
+        assertThat(replayed.getWorkflowData()).isEqualTo(execution.getWorkflowDataAsMap());
+    }
+
+    @Test
+    void stepsAreClassifiedByWhatTheyDid() {
+        WorkflowExecutionEntity execution = engine.startExecution(definitionCache.getDefinition(workflow), "alice");
+
+        execution = advance(execution, upload(10L, "invoice.pdf"));
+        execution = advance(execution, step(data("reviewDecision", "Approved")));
+        Map<String, Object> rejected = step(data("approvalDecision", "Rejected"));
+        rejected.put("nodeStatus", NodeStatus.REJECTED.getLabel());
+        rejected.put("workflowStatus", "Rejected");
+        execution = advance(execution, rejected);
+        // A later step on a rejected execution is not a rejection
+        advance(execution, step(data("reviewDecision", "Archived")));
+
+        assertThat(eventLog).extracting(WorkflowExecutionEventEntity::getEventType).containsExactly(
+                ExecutionEventType.STARTED,
+                ExecutionEventType.UPLOADED,
+                ExecutionEventType.REVIEWED,
+                ExecutionEventType.REJECTED,
+                ExecutionEventType.REVIEWED);
+    }
+
+    private WorkflowExecutionEntity advance(WorkflowExecutionEntity execution, Map<String, Object> context) {
+        return engine.advanceWorkflow(execution, context);
+    }
+
+    private static Map<String, Object> step(Map<String, Object> workflowData) {
+        Map<String, Object> context = new HashMap<>();
+        context.put("advanceWorkflow", true);
+        context.put("workflowData", workflowData);
+        return context;
+    }
+
+    private static Map<String, Object> upload(Long documentId, String fileName) {
+        Map<String, Object> context = step(data("documentType", "Invoice"));
+        context.put("documentId", documentId);
+        context.put("uploadedFileName", fileName);
+        context.put("mimeType", "application/pdf");
+        return context;
+    }
+
+    private static Map<String, Object> data(String... entries) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            data.put(entries[i], entries[i + 1]);
+        }
+        return data;
+    }
+
+    /**
+     * A workflow with the given (type, name) nodes in order
+     */
+    private static WorkflowJsonEntity workflow(String... typesAndNames) {
+        List<WorkflowNodeData> nodes = new ArrayList<>();
+        List<WorkflowConnection> connections = new ArrayList<>();
+        for (int i = 0; i < typesAndNames.length / 2; i++) {
+            WorkflowNodeData node = new WorkflowNodeData();
+            node.setId("node-" + i);
+            node.setType(typesAndNames[2 * i]);
+            node.setName(typesAndNames[2 * i + 1]);
+            node.setOrder(i);
+            node.setPosition(new NodePosition((50 + i * 30) + "px", "120px"));
+            node.setProps(new LinkedHashMap<>());
+            nodes.add(node);
+            if (i > 0) {
+                WorkflowConnection connection = new WorkflowConnection();
+                connection.setSource("node-" + (i - 1));
+                connection.setTarget("node-" + i);
+                connections.add(connection);
+            }
+        }
+
+        WorkflowJsonEntity entity = new WorkflowJsonEntity();
+        entity.setId(1L);
+        entity.setName("Invoice approval");
+        entity.setData(new WorkflowDocument(nodes, connections).toJson());
+        return entity;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.workflow.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Walks the breaker through its closed, open and half-open states
+ */
+class OpaCircuitBreakerTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        OpaCircuitBreaker breaker = breaker(2);
+
+        fail(breaker);
+        succeed(breaker);
+        fail(breaker);
+        fail(breaker);
+        int callsBefore = calls.get();
+
+        assertThatThrownBy(() -> breaker.protect(call(Mono.just(true))).block())
+                .isInstanceOf(OpaCircuitBreaker.CircuitOpenException.class);
+        assertThat(calls).hasValue(callsBefore);
+    }
+
+    @Test
+    void ignoresErrorsThatAreNotFailures() {
+        OpaCircuitBreaker breaker = breaker(1);
+
+        assertThatThrownBy(() -> breaker.protect(call(Mono.error(new IllegalArgumentException("bad input"))))
+                .block()).isInstanceOf(IllegalArgumentException.class);
+
+        succeed(breaker);
+    }
+
+    @Test
+    void letsOneTrialCallThroughWhenHalfOpen() {
+        OpaCircuitBreaker breaker = breaker(1);
+        fail(breaker);
+        expireOpenDuration(breaker);
+
+        Sinks.One<Boolean> trial = Sinks.one();
+        breaker.protect(call(trial.asMono())).subscribe();
+        assertThatThrownBy(() -> breaker.protect(call(Mono.just(true))).block())
+                .isInstanceOf(OpaCircuitBreaker.CircuitOpenException.class);
+
+        trial.tryEmitValue(true);
+
+        succeed(breaker);
+        succeed(breaker);
+    }
+
+    @Test
+    void reopensWhenTrialCallFails() {
+        OpaCircuitBreaker breaker = breaker(3);
+        fail(breaker);
+        fail(breaker);
+        fail(breaker);
+        expireOpenDuration(breaker);
+
+        // A single failed trial is enough, whatever the threshold
+        fail(breaker);
+
+        assertThatThrownBy(() -> breaker.protect(call(Mono.just(true))).block())
+                .isInstanceOf(OpaCircuitBreaker.CircuitOpenException.class);
+    }
+
+    @Test
+    void releasesTrialSlotWhenTrialCallIsCancelled() {
+        OpaCircuitBreaker breaker = breaker(1);
+        fail(breaker);
+        expireOpenDuration(breaker);
+
+        Disposable trial = breaker.protect(call(Mono.never())).subscribe();
+        trial.dispose();
+
+        succeed(breaker);
+    }
+
+    private OpaCircuitBreaker breaker(int failureThreshold) {
+        return new OpaCircuitBreaker(failureThreshold, Duration.ofHours(1), error -> error instanceof IOException);
+    }
+
+    /**
+     * Let the breaker act as if the open duration has passed
+     */
+    private static void expireOpenDuration(OpaCircuitBreaker breaker) {
+        ReflectionTestUtils.setField(breaker, "openedAt", System.nanoTime() - Duration.ofHours(2).toNanos());
+    }
+
+    private <T> Mono<T> call(Mono<T> result) {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+            return result;
+        });
+    }
+
+    private void succeed(OpaCircuitBreaker breaker) {
+        assertThat(breaker.protect(call(Mono.just(true))).block()).isTrue();
+    }
+
+    private void fail(OpaCircuitBreaker breaker) {
+        assertThatThrownBy(() -> breaker.protect(call(Mono.error(new IOException("connection refused")))).block())
+                .hasCauseInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.workflow.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that stale decisions are never served: not after they expire, and
+ * not when they were evaluated before the policy was redeployed
+ */
+class OpaDecisionCacheTest {
+
+    private static final String POLICY = "workflow_1";
+    private static final Map<String, Object> INPUT = Map.of("action", "advance", "role", "reviewer");
+
+    private final WorkflowMetrics metrics = new WorkflowMetrics(new SimpleMeterRegistry());
+
+    @Test
+    void returnsStoredDecision() {
+        OpaDecisionCache cache = new OpaDecisionCache(100, Duration.ofMinutes(1), metrics);
+
+        cache.put(cache.generation(), POLICY, INPUT, true);
+
+        assertThat(cache.get(POLICY, INPUT)).isTrue();
+        assertThat(cache.get(POLICY, Map.of("action", "advance", "role", "finance"))).isNull();
+        assertThat(cache.get("workflow_2", INPUT)).isNull();
+    }
+
+    @Test
+    void dropsPutOfDecisionEvaluatedBeforeInvalidate() {
+        OpaDecisionCache cache = new OpaDecisionCache(100, Duration.ofMinutes(1), metrics);
+
+        long generation = cache.generation();
+        cache.invalidate(POLICY);
+        cache.put(generation, POLICY, INPUT, true);
+
+        assertThat(cache.get(POLICY, INPUT)).isNull();
+
+        cache.put(cache.generation(), POLICY, INPUT, false);
+        assertThat(cache.get(POLICY, INPUT)).isFalse();
+    }
+
+    @Test
+    void invalidateDropsOnlyThatPackage() {
+        OpaDecisionCache cache = new OpaDecisionCache(100, Duration.ofMinutes(1), metrics);
+        cache.put(cache.generation(), POLICY, INPUT, true);
+        cache.put(cache.generation(), "workflow_2", INPUT, true);
+
+        cache.invalidate(POLICY);
+
+        assertThat(cache.get(POLICY, INPUT)).isNull();
+        assertThat(cache.get("workflow_2", INPUT)).isTrue();
+
+        cache.invalidateAll();
+        assertThat(cache.get("workflow_2", INPUT)).isNull();
+    }
+
+    @Test
+    void expiresDecisionsAfterTtl() throws InterruptedException {
+        OpaDecisionCache cache = new OpaDecisionCache(100, Duration.ofMillis(20), metrics);
+        cache.put(cache.generation(), POLICY, INPUT, true);
+        assertThat(cache.get(POLICY, INPUT)).isTrue();
+
+        Thread.sleep(50);
+
+        assertThat(cache.get(POLICY, INPUT)).isNull();
+    }
+
+    @Test
+    void copiesInputSoLaterChangesDoNotAffectTheKey() {
+        OpaDecisionCache cache = new OpaDecisionCache(100, Duration.ofMinutes(1), metrics);
+        Map<String, Object> input = new HashMap<>(INPUT);
+        cache.put(cache.generation(), POLICY, input, true);
+
+        input.put("role", "finance");
+
+        assertThat(cache.get(POLICY, INPUT)).isTrue();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondMaxSize() {
+        OpaDecisionCache cache = new OpaDecisionCache(2, Duration.ofMinutes(1), metrics);
+        Map<String, Object> second = Map.of("action", "advance", "role", "finance");
+        Map<String, Object> third = Map.of("action", "advance", "role", "legal");
+        cache.put(cache.generation(), POLICY, INPUT, true);
+        cache.put(cache.generation(), POLICY, second, true);
+
+        // Touch the first entry, so the second one is the eldest
+        cache.get(POLICY, INPUT);
+        cache.put(cache.generation(), POLICY, third, true);
+
+        assertThat(cache.get(POLICY, INPUT)).isTrue();
+        assertThat(cache.get(POLICY, second)).isNull();
+        assertThat(cache.get(POLICY, third)).isTrue();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.workflow.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Checks coalescing of resubmitted keys, the decisions answered while a
+ * deployment is pending, and how long a given-up key is reported as failed
+ */
+class PolicyDeploymentQueueTest {
+
+    private static final String KEY_1 = WorkflowPolicyGenerator.executionAclKey(1L);
+
+    private final PolicyEvaluator policyEvaluator = mock(PolicyEvaluator.class);
+    private final OpaDecisionCache decisionCache = mock(OpaDecisionCache.class);
+    private final WorkflowMetrics metrics = new WorkflowMetrics(new SimpleMeterRegistry());
+
+    private PolicyDeploymentQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    void coalescesResubmittedKeyIntoLatestChange() {
+        queue = new PolicyDeploymentQueue(policyEvaluator, decisionCache, metrics, Duration.ofMillis(100), 3);
+
+        queue.submitExecutionAcl(1L, "alice");
+        queue.submitExecutionAcl(2L, "carol");
+        queue.submitExecutionAcl(1L, "bob");
+
+        verify(policyEvaluator, timeout(2000)).updateExecutionAcls(Map.of(1L, "bob", 2L, "carol"), List.of());
+        // Resubmitting moved key 1 behind key 2, so it completes last
+        verify(decisionCache, timeout(2000)).invalidate(KEY_1);
+        verify(policyEvaluator, times(1)).updateExecutionAcls(anyMap(), anyCollection());
+        assertThat(queue.getState(KEY_1)).isEqualTo(PolicyDeploymentQueue.State.DEPLOYED);
+    }
+
+    @Test
+    void answersPendingDecisionsFromLatestSubmission() {
+        queue = new PolicyDeploymentQueue(policyEvaluator, decisionCache, metrics, Duration.ofMinutes(1), 3);
+
+        queue.submitExecutionAcl(1L, "alice");
+        queue.submitExecutionAcl(1L, "bob");
+
+        assertThat(queue.getState(KEY_1)).isEqualTo(PolicyDeploymentQueue.State.PENDING);
+        assertThat(queue.evaluatePending(KEY_1, uploadBy("bob"))).contains(true);
+        assertThat(queue.evaluatePending(KEY_1, uploadBy("alice"))).contains(false);
+
+        queue.submitExecutionAclRemoval(1L);
+        assertThat(queue.evaluatePending(KEY_1, uploadBy("bob"))).contains(false);
+
+        String otherKey = WorkflowPolicyGenerator.executionAclKey(2L);
+        assertThat(queue.evaluatePending(otherKey, uploadBy("bob"))).isEmpty();
+        assertThat(queue.getState(otherKey)).isEqualTo(PolicyDeploymentQueue.State.DEPLOYED);
+    }
+
+    @Test
+    void retriesFailedDeployment() {
+        doThrow(new RuntimeException("OPA unavailable")).doNothing()
+                .when(policyEvaluator).updateExecutionAcls(anyMap(), anyCollection());
+        queue = new PolicyDeploymentQueue(policyEvaluator, decisionCache, metrics, Duration.ofMillis(20), 3);
+
+        queue.submitExecutionAcl(1L, "alice");
+
+        verify(policyEvaluator, timeout(2000).times(2)).updateExecutionAcls(Map.of(1L, "alice"), List.of());
+        verify(decisionCache, timeout(2000)).invalidate(KEY_1);
+        assertThat(queue.getState(KEY_1)).isEqualTo(PolicyDeploymentQueue.State.DEPLOYED);
+    }
+
+    @Test
+    void reportsGivenUpKeyAsFailedUntilResubmitted() {
+        doThrow(new RuntimeException("OPA unavailable"))
+                .when(policyEvaluator).updateExecutionAcls(anyMap(), anyCollection());
+        queue = new PolicyDeploymentQueue(policyEvaluator, decisionCache, metrics, Duration.ofMillis(200), 1);
+
+        queue.submitExecutionAcl(1L, "alice");
+
+        verify(decisionCache, timeout(2000)).invalidate(KEY_1);
+        assertThat(queue.getState(KEY_1)).isEqualTo(PolicyDeploymentQueue.State.FAILED);
+
+        doNothing().when(policyEvaluator).updateExecutionAcls(anyMap(), anyCollection());
+        queue.submitExecutionAcl(1L, "alice");
+        assertThat(queue.getState(KEY_1)).isEqualTo(PolicyDeploymentQueue.State.PENDING);
+    }
+
+    @Test
+    void stopsReportingFailedKeyAfterRetention() {
+        queue = new PolicyDeploymentQueue(policyEvaluator, decisionCache, metrics, Duration.ofMinutes(1), 1);
+
+        failedKeys().put(KEY_1, System.nanoTime() - Duration.ofMinutes(30).toNanos());
+        assertThat(queue.getState(KEY_1)).isEqualTo(PolicyDeploymentQueue.State.FAILED);
+
+        failedKeys().put(KEY_1, System.nanoTime() - Duration.ofHours(2).toNanos());
+        assertThat(queue.getState(KEY_1)).isEqualTo(PolicyDeploymentQueue.State.DEPLOYED);
+    }
+
+    @Test
+    void coalescesFullAclLoads() {
+        queue = new PolicyDeploymentQueue(policyEvaluator, decisionCache, metrics, Duration.ofMillis(20), 3);
+
+        queue.submitExecutionAcls(() -> Map.of(1L, "alice"));
+        queue.submitExecutionAcls(() -> Map.of(1L, "bob"));
+
+        verify(policyEvaluator, timeout(2000)).loadExecutionAcls(Map.of(1L, "bob"));
+        verify(decisionCache, timeout(2000)).invalidateAll();
+        verify(policyEvaluator, times(1)).loadExecutionAcls(any());
+    }
+
+    private static Map<String, Object> uploadBy(String username) {
+        return Map.of("action", WorkflowPolicyGenerator.EXECUTION_ACTION, "username", username);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> failedKeys() {
+        return (Map<String, Long>) ReflectionTestUtils.getField(queue, "failed");
+    }
+}